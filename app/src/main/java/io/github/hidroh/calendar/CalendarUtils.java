@@ -1,12 +1,9 @@
 package io.github.hidroh.calendar;
 
 import android.content.Context;
-import android.support.v4.util.Pools;
 import android.text.format.DateUtils;
 
 import java.util.Calendar;
-import java.util.GregorianCalendar;
-import java.util.TimeZone;
 
 /**
  * Utility class for {@link Calendar} and date time related operations
@@ -47,10 +44,7 @@ public class CalendarUtils {
      * @return  today time in milliseconds
      */
     public static long today() {
-        DateOnlyCalendar calendar = DateOnlyCalendar.today();
-        long timeMillis = calendar.getTimeInMillis();
-        calendar.recycle();
-        return timeMillis;
+        return CivilDate.startOfDay(CivilDate.localDay(System.currentTimeMillis()));
     }
 
     /**
@@ -95,17 +89,11 @@ public class CalendarUtils {
      * @param second    second timestamp in milliseconds
      * @return  true if two timestamps fall within the same month, false otherwise or if time is invalid
      */
-    @SuppressWarnings("ConstantConditions")
     public static boolean sameMonth(long first, long second) {
         if (isNotTime(first) || isNotTime(second)) {
             return false; // not comparable
         }
-        DateOnlyCalendar firstCalendar = DateOnlyCalendar.fromTime(first);
-        DateOnlyCalendar secondCalendar = DateOnlyCalendar.fromTime(second);
-        boolean same = firstCalendar.sameMonth(secondCalendar);
-        firstCalendar.recycle();
-        secondCalendar.recycle();
-        return same;
+        return yearMonth(first) == yearMonth(second);
     }
 
     /**
@@ -117,11 +105,7 @@ public class CalendarUtils {
         if (isNotTime(timeMillis)) {
             return -1;
         }
-        DateOnlyCalendar calendar = DateOnlyCalendar.fromTime(timeMillis);
-        //noinspection ConstantConditions
-        int day = calendar.get(Calendar.DAY_OF_MONTH);
-        calendar.recycle();
-        return day;
+        return CivilDate.dayOfMonth(CivilDate.localDay(timeMillis));
     }
 
     /**
@@ -130,17 +114,11 @@ public class CalendarUtils {
      * @param second    second timestamp in milliseconds
      * @return  true if first timestamp is in an earlier month, false otherwise
      */
-    @SuppressWarnings("ConstantConditions")
     public static boolean monthBefore(long first, long second) {
         if (isNotTime(first) || isNotTime(second)) {
             return false;
         }
-        DateOnlyCalendar firstCalendar = DateOnlyCalendar.fromTime(first);
-        DateOnlyCalendar secondCalendar = DateOnlyCalendar.fromTime(second);
-        boolean before = firstCalendar.monthBefore(secondCalendar);
-        firstCalendar.recycle();
-        secondCalendar.recycle();
-        return before;
+        return yearMonth(first) < yearMonth(second);
     }
 
     /**
@@ -149,17 +127,11 @@ public class CalendarUtils {
      * @param second    second timestamp in milliseconds
      * @return  true if first timestamp is in a later month, false otherwise
      */
-    @SuppressWarnings("ConstantConditions")
     public static boolean monthAfter(long first, long second) {
         if (isNotTime(first) || isNotTime(second)) {
             return false;
         }
-        DateOnlyCalendar firstCalendar = DateOnlyCalendar.fromTime(first);
-        DateOnlyCalendar secondCalendar = DateOnlyCalendar.fromTime(second);
-        boolean after = firstCalendar.monthAfter(secondCalendar);
-        firstCalendar.recycle();
-        secondCalendar.recycle();
-        return after;
+        return yearMonth(first) > yearMonth(second);
     }
 
     /**
@@ -172,12 +144,11 @@ public class CalendarUtils {
         if (isNotTime(timeMillis)) {
             return NO_TIME_MILLIS;
         }
-        DateOnlyCalendar calendar = DateOnlyCalendar.fromTime(timeMillis);
-        //noinspection ConstantConditions
-        calendar.add(Calendar.MONTH, months);
-        long result = calendar.getTimeInMillis();
-        calendar.recycle();
-        return result;
+        long day = CivilDate.localDay(timeMillis);
+        int yearMonth = CivilDate.yearMonth(day) + months;
+        // day of month is capped at new month's last day, similar to Calendar#add(int, int)
+        int dayOfMonth = Math.min(CivilDate.dayOfMonth(day), CivilDate.monthLength(yearMonth));
+        return CivilDate.startOfDay(CivilDate.firstDay(yearMonth) + dayOfMonth - 1);
     }
 
     /**
@@ -189,12 +160,7 @@ public class CalendarUtils {
         if (isNotTime(monthMillis)) {
             return NO_TIME_MILLIS;
         }
-        DateOnlyCalendar calendar = DateOnlyCalendar.fromTime(monthMillis);
-        //noinspection ConstantConditions
-        calendar.set(Calendar.DAY_OF_MONTH, 1);
-        long result = calendar.getTimeInMillis();
-        calendar.recycle();
-        return result;
+        return CivilDate.startOfDay(CivilDate.firstDay(yearMonth(monthMillis)));
     }
 
     /**
@@ -206,12 +172,8 @@ public class CalendarUtils {
         if (isNotTime(monthMillis)) {
             return NO_TIME_MILLIS;
         }
-        DateOnlyCalendar calendar = DateOnlyCalendar.fromTime(monthMillis);
-        //noinspection ConstantConditions
-        calendar.set(Calendar.DAY_OF_MONTH, calendar.getActualMaximum(Calendar.DAY_OF_MONTH));
-        long result = calendar.getTimeInMillis();
-        calendar.recycle();
-        return result;
+        int yearMonth = yearMonth(monthMillis);
+        return CivilDate.startOfDay(CivilDate.firstDay(yearMonth + 1) - 1);
     }
 
     /**
@@ -223,11 +185,7 @@ public class CalendarUtils {
         if (isNotTime(monthMillis)) {
             return 0;
         }
-        DateOnlyCalendar calendar = DateOnlyCalendar.fromTime(monthMillis);
-        //noinspection ConstantConditions
-        int size = calendar.getActualMaximum(Calendar.DAY_OF_MONTH);
-        calendar.recycle();
-        return size;
+        return CivilDate.monthLength(yearMonth(monthMillis));
     }
 
     /**
@@ -242,14 +200,7 @@ public class CalendarUtils {
         if (isNotTime(monthMillis)) {
             return 0;
         }
-        DateOnlyCalendar calendar = DateOnlyCalendar.fromTime(monthMillis);
-        //noinspection ConstantConditions
-        int offset = calendar.get(Calendar.DAY_OF_WEEK) - calendar.getFirstDayOfWeek();
-        if (offset < 0) {
-            offset = 7 + offset;
-        }
-        calendar.recycle();
-        return offset;
+        return CivilDate.weekOffset(CivilDate.localDay(monthMillis), sWeekStart);
     }
 
     /**
@@ -258,8 +209,8 @@ public class CalendarUtils {
      * @return  local time in milliseconds
      */
     public static long toLocalTimeZone(long utcTimeMillis) {
-        return convertTimeZone(TimeZone.getTimeZone(TIMEZONE_UTC), TimeZone.getDefault(),
-                utcTimeMillis);
+        // UTC wall clock time is UTC time itself
+        return CivilDate.fromWallTime(utcTimeMillis);
     }
 
     /**
@@ -268,101 +219,10 @@ public class CalendarUtils {
      * @return  UTC time in milliseconds
      */
     public static long toUtcTimeZone(long localTimeMillis) {
-        return convertTimeZone(TimeZone.getDefault(), TimeZone.getTimeZone(TIMEZONE_UTC),
-                localTimeMillis);
-    }
-
-    private static long convertTimeZone(TimeZone fromTimeZone, TimeZone toTimeZone, long timeMillis) {
-        DateOnlyCalendar fromCalendar = DateOnlyCalendar.obtain();
-        fromCalendar.setTimeZone(fromTimeZone);
-        fromCalendar.setTimeInMillis(timeMillis);
-        DateOnlyCalendar toCalendar = DateOnlyCalendar.obtain();
-        toCalendar.setTimeZone(toTimeZone);
-        toCalendar.set(fromCalendar.get(Calendar.YEAR),
-                fromCalendar.get(Calendar.MONTH),
-                fromCalendar.get(Calendar.DAY_OF_MONTH),
-                fromCalendar.get(Calendar.HOUR_OF_DAY),
-                fromCalendar.get(Calendar.MINUTE),
-                fromCalendar.get(Calendar.SECOND));
-        long localTimeMillis = toCalendar.getTimeInMillis();
-        fromCalendar.recycle();
-        toCalendar.recycle();
-        return localTimeMillis;
-
+        return CivilDate.toWallTime(localTimeMillis);
     }
 
-    /**
-     * Light extension of {@link Calendar} that strips away time, keeping only date information
-     */
-    private static class DateOnlyCalendar extends GregorianCalendar {
-
-        private static Pools.SimplePool<DateOnlyCalendar> sPools = new Pools.SimplePool<>(5);
-
-        private static DateOnlyCalendar obtain() {
-            DateOnlyCalendar instance = sPools.acquire();
-            return instance == null ? new DateOnlyCalendar() : instance;
-        }
-
-        public static DateOnlyCalendar today() {
-            return fromTime(System.currentTimeMillis());
-        }
-
-        public static DateOnlyCalendar fromTime(long timeMillis) {
-            if (timeMillis < 0) {
-                return null;
-            }
-            DateOnlyCalendar dateOnlyCalendar = DateOnlyCalendar.obtain();
-            dateOnlyCalendar.setTimeInMillis(timeMillis);
-            dateOnlyCalendar.stripTime();
-            //noinspection WrongConstant
-            dateOnlyCalendar.setFirstDayOfWeek(sWeekStart);
-            return dateOnlyCalendar;
-        }
-
-        private DateOnlyCalendar() {
-            super();
-        }
-
-        /**
-         * Checks if this instance falls in some month before given instance
-         * @param other    instance to check against
-         * @return  true if this instance is at least 1 'month' before, false otherwise
-         */
-        public boolean monthBefore(DateOnlyCalendar other) {
-            int day = other.get(DAY_OF_MONTH);
-            other.set(DAY_OF_MONTH, 1);
-            boolean before = getTimeInMillis() < other.getTimeInMillis();
-            other.set(DAY_OF_MONTH, day);
-            return before;
-        }
-
-        /**
-         * Checks if this instance falls in some month after given instance
-         * @param other    instance to check against
-         * @return  true if this instance is at least 1 'month' after, false otherwise
-         */
-        public boolean monthAfter(DateOnlyCalendar other) {
-            int day = other.get(DAY_OF_MONTH);
-            other.set(DAY_OF_MONTH, other.getActualMaximum(DAY_OF_MONTH));
-            boolean after = getTimeInMillis() > other.getTimeInMillis();
-            other.set(DAY_OF_MONTH, day);
-            return after;
-        }
-
-        public boolean sameMonth(DateOnlyCalendar other) {
-            return get(YEAR) == other.get(YEAR) && get(MONTH) == other.get(MONTH);
-        }
-
-        void stripTime() {
-            set(Calendar.HOUR_OF_DAY, 0);
-            set(Calendar.MINUTE, 0);
-            set(Calendar.SECOND, 0);
-            set(Calendar.MILLISECOND, 0);
-        }
-
-        void recycle() {
-            setTimeZone(TimeZone.getDefault());
-            sPools.release(this);
-        }
+    private static int yearMonth(long timeMillis) {
+        return CivilDate.yearMonth(CivilDate.localDay(timeMillis));
     }
 }
@@ -0,0 +1,351 @@
+package io.github.hidroh.calendar;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Allocation-free civil (proleptic Gregorian) date arithmetic on primitive values,
+ * used in place of {@link Calendar} for date only computations.
+ *
+ * Days are represented as epoch days (number of days since 1970-01-01),
+ * months as packed year-month integers ({@code year * 12 + month}),
+ * with month being 0-based, i.e. {@link Calendar#JANUARY} to {@link Calendar#DECEMBER}.
+ */
+public class CivilDate {
+
+    /**
+     * Number of milliseconds in a day
+     */
+    public static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final long MINUTE_MILLIS = 60 * 1000L;
+    private static final int MONTHS_PER_YEAR = 12;
+    private static final int DAYS_PER_WEEK = 7;
+    private static final int DAYS_PER_ERA = 146097; // days per 400 years
+    private static final int EPOCH_SHIFT = 719468; // days from 0000-03-01 to 1970-01-01
+    private static volatile ZoneCache sZoneCache;
+    private static volatile int sGeneration;
+
+    /**
+     * Gets epoch day of given date, month and day values may overflow
+     * @param year          year
+     * @param month         0-based month
+     * @param dayOfMonth    1-based day of month
+     * @return  epoch day
+     */
+    public static long epochDay(int year, int month, int dayOfMonth) {
+        int yearMonth = yearMonth(year, month);
+        year = year(yearMonth);
+        int m = month(yearMonth) + 1; // 1-based
+        if (m <= 2) {
+            year--;
+        }
+        long era = floorDiv(year, 400);
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (m > 2 ? m - 3 : m + 9) + 2) / 5 + dayOfMonth - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * DAYS_PER_ERA + dayOfEra - EPOCH_SHIFT;
+    }
+
+    /**
+     * Packs given year and month into a year-month value, month value may overflow
+     * @param year     year
+     * @param month    0-based month
+     * @return  packed year-month
+     */
+    public static int yearMonth(int year, int month) {
+        return year * MONTHS_PER_YEAR + month;
+    }
+
+    /**
+     * Gets packed year-month of given epoch day
+     * @param epochDay    epoch day
+     * @return  packed year-month
+     */
+    public static int yearMonth(long epochDay) {
+        long z = epochDay + EPOCH_SHIFT;
+        long era = floorDiv(z, DAYS_PER_ERA);
+        long dayOfEra = z - era * DAYS_PER_ERA;
+        long yearOfEra = yearOfEra(dayOfEra);
+        long shiftedMonth = (5 * dayOfYear(dayOfEra, yearOfEra) + 2) / 153; // March-based
+        int m = (int) (shiftedMonth < 10 ? shiftedMonth + 2 : shiftedMonth - 10); // 0-based
+        int year = (int) (yearOfEra + era * 400) + (m <= Calendar.FEBRUARY ? 1 : 0);
+        return yearMonth(year, m);
+    }
+
+    /**
+     * Gets year of given packed year-month
+     * @param yearMonth    packed year-month
+     * @return  year
+     */
+    public static int year(int yearMonth) {
+        return (int) floorDiv(yearMonth, MONTHS_PER_YEAR);
+    }
+
+    /**
+     * Gets 0-based month of given packed year-month
+     * @param yearMonth    packed year-month
+     * @return  0-based month
+     */
+    public static int month(int yearMonth) {
+        return yearMonth - year(yearMonth) * MONTHS_PER_YEAR;
+    }
+
+    /**
+     * Gets day of month of given epoch day
+     * @param epochDay    epoch day
+     * @return  1-based day of month
+     */
+    public static int dayOfMonth(long epochDay) {
+        long z = epochDay + EPOCH_SHIFT;
+        long dayOfEra = z - floorDiv(z, DAYS_PER_ERA) * DAYS_PER_ERA;
+        long dayOfYear = dayOfYear(dayOfEra, yearOfEra(dayOfEra));
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        return (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+    }
+
+    /**
+     * Gets epoch day of first day of given month
+     * @param yearMonth    packed year-month
+     * @return  epoch day
+     */
+    public static long firstDay(int yearMonth) {
+        return epochDay(year(yearMonth), month(yearMonth), 1);
+    }
+
+    /**
+     * Gets number of days in given month
+     * @param yearMonth    packed year-month
+     * @return  number of days in month
+     */
+    public static int monthLength(int yearMonth) {
+        return (int) (firstDay(yearMonth + 1) - firstDay(yearMonth));
+    }
+
+    /**
+     * Gets day of week of given epoch day
+     * @param epochDay    epoch day
+     * @return  day of week, from {@link Calendar#SUNDAY} to {@link Calendar#SATURDAY}
+     */
+    public static int dayOfWeek(long epochDay) {
+        // 1970-01-01 is a Thursday
+        return (int) floorMod(epochDay + Calendar.THURSDAY - Calendar.SUNDAY, DAYS_PER_WEEK)
+                + Calendar.SUNDAY;
+    }
+
+    /**
+     * Gets number of days from given week start to day of week of given epoch day
+     * @param epochDay     epoch day
+     * @param weekStart    week start, from {@link Calendar#SUNDAY} to {@link Calendar#SATURDAY}
+     * @return  offset within week, from 0 to 6
+     */
+    public static int weekOffset(long epochDay, int weekStart) {
+        return (int) floorMod(dayOfWeek(epochDay) - weekStart, DAYS_PER_WEEK);
+    }
+
+    /**
+     * Gets epoch day of local date of given time in default time zone
+     * @param timeMillis    time in milliseconds
+     * @return  epoch day
+     */
+    public static long localDay(long timeMillis) {
+        return floorDiv(toWallTime(timeMillis), DAY_MILLIS);
+    }
+
+    /**
+     * Gets minute of day of local time of given time in default time zone
+     * @param timeMillis    time in milliseconds
+     * @return  0-based minute of day
+     */
+    public static int localMinuteOfDay(long timeMillis) {
+        return (int) (floorMod(toWallTime(timeMillis), DAY_MILLIS) / MINUTE_MILLIS);
+    }
+
+    /**
+     * Gets start of given day (local midnight) in default time zone.
+     * If midnight is skipped by a daylight saving transition, first instant of day is returned.
+     * @param epochDay    epoch day
+     * @return  time in milliseconds
+     */
+    public static long startOfDay(long epochDay) {
+        return zone().startOfDay(epochDay);
+    }
+
+    /**
+     * Converts given time to local wall clock time in default time zone,
+     * i.e. time in milliseconds that has the same date and time fields in UTC
+     * @param timeMillis    time in milliseconds
+     * @return  wall clock time in milliseconds
+     */
+    public static long toWallTime(long timeMillis) {
+        return timeMillis + zone().getOffset(timeMillis);
+    }
+
+    /**
+     * Converts given local wall clock time in default time zone to time.
+     * Skipped wall clock time is shifted forward by the length of daylight saving gap,
+     * repeated wall clock time resolves to its later occurrence, similar to {@link Calendar}.
+     * @param wallTimeMillis    wall clock time in milliseconds
+     * @return  time in milliseconds
+     * @see #toWallTime(long)
+     */
+    public static long fromWallTime(long wallTimeMillis) {
+        return zone().fromWallTime(wallTimeMillis);
+    }
+
+    static long floorDiv(long x, long y) {
+        long q = x / y;
+        return (x % y != 0 && ((x ^ y) < 0)) ? q - 1 : q;
+    }
+
+    static long floorMod(long x, long y) {
+        return x - floorDiv(x, y) * y;
+    }
+
+    private static long yearOfEra(long dayOfEra) {
+        return (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    }
+
+    private static long dayOfYear(long dayOfEra, long yearOfEra) {
+        return dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    }
+
+    /**
+     * Drops cached data of default time zone, to be rebuilt on next use,
+     * and advances {@link #generation()} for dependent caches to drop theirs.
+     * Should be called whenever default time zone or locale changes
+     * @see {@link TimeZoneReceiver}
+     */
+    public static void invalidate() {
+        sZoneCache = null;
+        sGeneration++;
+    }
+
+    /**
+     * Gets number of times cached data have been invalidated, which changes
+     * once default time zone or locale changes
+     * @return  invalidation generation
+     * @see {@link #invalidate()}
+     */
+    public static int generation() {
+        return sGeneration;
+    }
+
+    private static ZoneCache zone() {
+        ZoneCache cache = sZoneCache;
+        if (cache == null) {
+            cache = new ZoneCache(TimeZone.getDefault());
+            sZoneCache = cache;
+        }
+        return cache;
+    }
+
+    /**
+     * Per time zone cache of offset transitions around current time, and of resolved
+     * local midnights in a direct mapped table keyed by epoch day
+     */
+    private static class ZoneCache {
+        private static final int SIZE = 128; // power of 2
+        private static final long TRANSITION_WINDOW_DAYS = 10 * 366; // before and after now
+        private final TimeZone mTimeZone;
+        private final long[] mDays = new long[SIZE];
+        private final long[] mMidnights = new long[SIZE];
+        private final long mWindowStart;
+        private final long mWindowEnd;
+        // mOffsets[i] is in effect until mTransitions[i], last offset after last transition
+        private long[] mTransitions = new long[0];
+        // wall clock time from which new offset applies, i.e. transition time plus new offset
+        private long[] mWallTransitions = new long[0];
+        private int[] mOffsets;
+
+        ZoneCache(TimeZone timeZone) {
+            mTimeZone = timeZone;
+            // mark all slots as empty, ~i never maps to slot i
+            for (int i = 0; i < SIZE; i++) {
+                mDays[i] = ~i;
+            }
+            long now = System.currentTimeMillis();
+            mWindowStart = now - TRANSITION_WINDOW_DAYS * DAY_MILLIS;
+            mWindowEnd = now + TRANSITION_WINDOW_DAYS * DAY_MILLIS;
+            int offset = timeZone.getOffset(mWindowStart);
+            mOffsets = new int[]{offset};
+            // scan daily for offset changes, then bisect to exact transition instant
+            for (long timeMillis = mWindowStart + DAY_MILLIS;
+                 timeMillis < mWindowEnd;
+                 timeMillis += DAY_MILLIS) {
+                if (timeZone.getOffset(timeMillis) == offset) {
+                    continue;
+                }
+                long before = timeMillis - DAY_MILLIS, after = timeMillis;
+                while (after - before > 1) {
+                    long mid = (before + after) >>> 1;
+                    if (timeZone.getOffset(mid) == offset) {
+                        before = mid;
+                    } else {
+                        after = mid;
+                    }
+                }
+                offset = timeZone.getOffset(after);
+                addTransition(after, offset);
+                timeMillis = after; // resume scanning from transition
+            }
+        }
+
+        synchronized long startOfDay(long epochDay) {
+            int slot = (int) (epochDay & (SIZE - 1));
+            if (mDays[slot] != epochDay) {
+                mMidnights[slot] = fromWallTime(epochDay * DAY_MILLIS);
+                mDays[slot] = epochDay;
+            }
+            return mMidnights[slot];
+        }
+
+        int getOffset(long timeMillis) {
+            if (timeMillis < mWindowStart || timeMillis >= mWindowEnd) {
+                return mTimeZone.getOffset(timeMillis);
+            }
+            int index = Arrays.binarySearch(mTransitions, timeMillis);
+            // new offset takes effect at transition instant
+            return mOffsets[index >= 0 ? index + 1 : -index - 1];
+        }
+
+        long fromWallTime(long wallTimeMillis) {
+            if (wallTimeMillis < mWindowStart + DAY_MILLIS ||
+                    wallTimeMillis >= mWindowEnd - DAY_MILLIS) {
+                return probeWallTime(wallTimeMillis);
+            }
+            // skipped wall clock time falls before new offset applies, keeping offset before
+            // transition, repeated wall clock time falls after, resolving to later occurrence
+            int index = Arrays.binarySearch(mWallTransitions, wallTimeMillis);
+            return wallTimeMillis - mOffsets[index >= 0 ? index + 1 : -index - 1];
+        }
+
+        private long probeWallTime(long wallTimeMillis) {
+            int rawOffset = mTimeZone.getRawOffset();
+            long result = Long.MIN_VALUE, latest = Long.MIN_VALUE;
+            // probe offsets in effect around given wall time, pick the latest exact match
+            for (long probe = wallTimeMillis - rawOffset - DAY_MILLIS;
+                 probe <= wallTimeMillis - rawOffset + DAY_MILLIS;
+                 probe += DAY_MILLIS) {
+                int offset = mTimeZone.getOffset(probe);
+                long timeMillis = wallTimeMillis - offset;
+                if (mTimeZone.getOffset(timeMillis) == offset) {
+                    result = Math.max(result, timeMillis);
+                }
+                latest = Math.max(latest, timeMillis);
+            }
+            // skipped wall time: apply offset before transition, i.e. shift forward by gap
+            return result != Long.MIN_VALUE ? result : latest;
+        }
+
+        private void addTransition(long timeMillis, int offset) {
+            int count = mTransitions.length;
+            mTransitions = Arrays.copyOf(mTransitions, count + 1);
+            mTransitions[count] = timeMillis;
+            mWallTransitions = Arrays.copyOf(mWallTransitions, count + 1);
+            mWallTransitions[count] = timeMillis + offset;
+            mOffsets = Arrays.copyOf(mOffsets, count + 2);
+            mOffsets[count + 1] = offset;
+        }
+    }
+}
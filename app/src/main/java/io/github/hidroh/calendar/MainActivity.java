@@ -22,6 +22,7 @@ import android.support.v4.app.ActivityCompat;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
+import android.support.v4.util.LongSparseArray;
 import android.support.v4.widget.DrawerLayout;
 import android.support.v7.app.ActionBar;
 import android.support.v7.app.ActionBarDrawerToggle;
@@ -32,17 +33,20 @@ import android.text.format.DateUtils;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.CheckedTextView;
 import android.widget.TextView;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 
 import io.github.hidroh.calendar.content.CalendarCursor;
 import io.github.hidroh.calendar.content.EventCursor;
-import io.github.hidroh.calendar.content.EventsQueryHandler;
+import io.github.hidroh.calendar.content.EventStore;
 import io.github.hidroh.calendar.weather.WeatherSyncService;
 import io.github.hidroh.calendar.widget.AgendaAdapter;
 import io.github.hidroh.calendar.widget.AgendaView;
@@ -94,9 +98,12 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
     private View mDrawer;
     private final HashSet<String> mExcludedCalendarIds = new HashSet<>();
     private boolean mWeatherEnabled, mPendingWeatherEnabled;
+    private int mCalendarsSpan;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        StartupTrace.start();
+        int span = StartupTrace.begin("onCreate");
         super.onCreate(savedInstanceState);
         setUpPreferences();
         setContentView(R.layout.activity_main);
@@ -105,6 +112,10 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         getSupportActionBar().setDisplayOptions(
                 ActionBar.DISPLAY_SHOW_HOME | ActionBar.DISPLAY_HOME_AS_UP);
         setUpContentView();
+        if (StartupTrace.ENABLED) {
+            traceFirstFrame();
+        }
+        StartupTrace.end(span);
     }
 
     @Override
@@ -124,7 +135,10 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         super.onPostCreate(savedInstanceState);
         mDrawerToggle.syncState();
         mCoordinator.coordinate(mToolbarToggle, mCalendarView, mAgendaView);
-        if (checkCalendarPermissions()) {
+        int span = StartupTrace.begin("checkCalendarPermissions");
+        boolean granted = checkCalendarPermissions();
+        StartupTrace.end(span);
+        if (granted) {
             loadEvents();
         } else {
             toggleEmptyView(true);
@@ -254,6 +268,7 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
         switch (loader.getId()) {
             case LOADER_CALENDARS:
+                StartupTrace.end(mCalendarsSpan);
                 if (data != null && data.moveToFirst()) {
                     mCalendarSelectionView.swapCursor(new CalendarCursor(data), mExcludedCalendarIds);
                 }
@@ -369,12 +384,29 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
     }
 
     private void loadEvents() {
+        int span = StartupTrace.begin("loadEvents");
+        mCalendarsSpan = StartupTrace.begin("loadCalendars");
         getSupportLoaderManager().initLoader(LOADER_CALENDARS, null, this);
         getSupportLoaderManager().initLoader(LOADER_LOCAL_CALENDAR, null, this);
         mFabAdd.show();
         mCalendarView.setCalendarAdapter(new CalendarCursorAdapter(this, mExcludedCalendarIds));
         mAgendaView.setAdapter(new AgendaCursorAdapter(this, mExcludedCalendarIds));
         loadWeather();
+        StartupTrace.end(span);
+    }
+
+    private void traceFirstFrame() {
+        final int span = StartupTrace.begin("firstFrame");
+        mAgendaView.getViewTreeObserver().addOnPreDrawListener(
+                new ViewTreeObserver.OnPreDrawListener() {
+                    @Override
+                    public boolean onPreDraw() {
+                        mAgendaView.getViewTreeObserver().removeOnPreDrawListener(this);
+                        StartupTrace.end(span);
+                        StartupTrace.finish();
+                        return true;
+                    }
+                });
     }
 
     private void toggleWeather() {
@@ -547,69 +579,103 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
 
     static class AgendaCursorAdapter extends AgendaAdapter {
 
-        @VisibleForTesting
-        final DayEventsQueryHandler mHandler;
+        private final EventStore mEventStore;
+        private final Collection<String> mExcludedCalendarIds;
+        private final List<RangeCallback> mCallbacks = new ArrayList<>();
 
         public AgendaCursorAdapter(Context context, Collection<String> excludedCalendarIds) {
             super(context);
-            mHandler = new DayEventsQueryHandler(context.getContentResolver(), this,
-                    excludedCalendarIds);
+            mEventStore = EventStore.getInstance(context);
+            mExcludedCalendarIds = excludedCalendarIds;
         }
 
         @Override
         protected void loadEvents(long timeMillis) {
-            mHandler.startQuery(timeMillis, timeMillis, timeMillis + DateUtils.DAY_IN_MILLIS);
+            loadEvents(timeMillis, timeMillis + DateUtils.DAY_IN_MILLIS);
         }
-    }
-
-    static class CalendarCursorAdapter extends EventCalendarView.CalendarAdapter {
-        private final MonthEventsQueryHandler mHandler;
 
-        public CalendarCursorAdapter(Context context, Collection<String> excludedCalendarIds) {
-            mHandler = new MonthEventsQueryHandler(context.getContentResolver(), this,
-                    excludedCalendarIds);
+        @Override
+        protected void loadEvents(long startTimeMillis, long endTimeMillis) {
+            RangeCallback callback = new RangeCallback(startTimeMillis, endTimeMillis);
+            mCallbacks.add(callback);
+            mEventStore.query(startTimeMillis, endTimeMillis, mExcludedCalendarIds, callback);
         }
 
         @Override
-        protected void loadEvents(long monthMillis) {
-            long startTimeMillis = CalendarUtils.monthFirstDay(monthMillis),
-                    endTimeMillis = startTimeMillis + DateUtils.DAY_IN_MILLIS *
-                            CalendarUtils.monthSize(monthMillis);
-            mHandler.startQuery(monthMillis, startTimeMillis, endTimeMillis);
+        protected void cancelEvents(long startTimeMillis, long endTimeMillis) {
+            for (int i = mCallbacks.size() - 1; i >= 0; i--) {
+                RangeCallback callback = mCallbacks.get(i);
+                if (callback.mStartTimeMillis >= startTimeMillis &&
+                        callback.mEndTimeMillis <= endTimeMillis) {
+                    mEventStore.cancel(callback);
+                    mCallbacks.remove(i);
+                }
+            }
+        }
+
+        class RangeCallback implements EventStore.Callback {
+            final long mStartTimeMillis;
+            final long mEndTimeMillis;
+
+            RangeCallback(long startTimeMillis, long endTimeMillis) {
+                mStartTimeMillis = startTimeMillis;
+                mEndTimeMillis = endTimeMillis;
+            }
+
+            @Override
+            public boolean onLoaded(EventCursor cursor) {
+                mCallbacks.remove(this);
+                return bindEvents(mStartTimeMillis, mEndTimeMillis, cursor);
+            }
         }
     }
 
-    static class DayEventsQueryHandler extends EventsQueryHandler {
+    static class CalendarCursorAdapter extends EventCalendarView.CalendarAdapter {
+        // month view only marks days with events, no need for titles
+        private static final EventCursor.Projection PROJECTION =
+                new EventCursor.Projection.Builder().calendarId().build();
 
-        private final AgendaCursorAdapter mAgendaCursorAdapter;
+        private final EventStore mEventStore;
+        private final Collection<String> mExcludedCalendarIds;
+        private final LongSparseArray<EventStore.Callback> mCallbacks = new LongSparseArray<>();
 
-        public DayEventsQueryHandler(ContentResolver cr,
-                                     AgendaCursorAdapter agendaCursorAdapter,
-                                     @NonNull Collection<String> excludedCalendarIds) {
-            super(cr, excludedCalendarIds);
-            mAgendaCursorAdapter = agendaCursorAdapter;
+        public CalendarCursorAdapter(Context context, Collection<String> excludedCalendarIds) {
+            mEventStore = EventStore.getInstance(context);
+            mExcludedCalendarIds = excludedCalendarIds;
         }
 
         @Override
-        protected void handleQueryComplete(int token, Object cookie, EventCursor cursor) {
-            mAgendaCursorAdapter.bindEvents((Long) cookie, cursor);
+        protected void loadEvents(final long monthMillis) {
+            long startTimeMillis = CalendarUtils.monthFirstDay(monthMillis),
+                    endTimeMillis = startTimeMillis + DateUtils.DAY_IN_MILLIS *
+                            CalendarUtils.monthSize(monthMillis);
+            // newer load for same month supersedes pending one
+            cancelEvents(startTimeMillis);
+            EventStore.Callback callback = new EventStore.Callback() {
+                @Override
+                public boolean onLoaded(EventCursor cursor) {
+                    mCallbacks.remove(CalendarUtils.monthFirstDay(monthMillis));
+                    return bindEvents(monthMillis, cursor);
+                }
+            };
+            mCallbacks.put(startTimeMillis, callback);
+            mEventStore.query(startTimeMillis, endTimeMillis, mExcludedCalendarIds, PROJECTION,
+                    callback);
         }
-    }
 
-    static class MonthEventsQueryHandler extends EventsQueryHandler {
-
-        private final CalendarCursorAdapter mAdapter;
-
-        public MonthEventsQueryHandler(ContentResolver cr,
-                                       CalendarCursorAdapter adapter,
-                                       @NonNull Collection<String> excludedCalendarIds) {
-            super(cr, excludedCalendarIds);
-            mAdapter = adapter;
+        @Override
+        protected void cancelEvents(long monthMillis) {
+            long firstDayMillis = CalendarUtils.monthFirstDay(monthMillis);
+            EventStore.Callback callback = mCallbacks.get(firstDayMillis);
+            if (callback != null) {
+                mEventStore.cancel(callback);
+                mCallbacks.remove(firstDayMillis);
+            }
         }
 
         @Override
-        protected void handleQueryComplete(int token, Object cookie, EventCursor cursor) {
-            mAdapter.bindEvents((Long) cookie, cursor);
+        protected void prefetchEvents(long monthMillis) {
+            mEventStore.prefetch(monthMillis, PROJECTION);
         }
     }
 
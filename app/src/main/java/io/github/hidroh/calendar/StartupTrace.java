@@ -0,0 +1,104 @@
+package io.github.hidroh.calendar;
+
+import android.support.annotation.VisibleForTesting;
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * Lightweight tracing of named spans from activity creation to first frame,
+ * reported as a single log line once startup is finished.
+ * Spans can start and end in different methods, e.g. around asynchronous queries.
+ * All methods are no-op in release builds
+ */
+public class StartupTrace {
+    public static final boolean ENABLED = BuildConfig.DEBUG;
+    public static final int NO_SPAN = -1;
+    @VisibleForTesting static final int MAX_SPANS = 64;
+    private static final String TAG = StartupTrace.class.getSimpleName();
+
+    private static final String[] sNames = new String[MAX_SPANS];
+    private static final long[] sStartNanos = new long[MAX_SPANS];
+    private static final long[] sEndNanos = new long[MAX_SPANS];
+    private static long sOriginNanos;
+    private static int sCount = 0;
+    private static boolean sTracing = false;
+
+    /**
+     * Starts a new trace, discarding previous spans
+     */
+    public static synchronized void start() {
+        if (!ENABLED) {
+            return;
+        }
+        sOriginNanos = System.nanoTime();
+        sCount = 0;
+        sTracing = true;
+    }
+
+    /**
+     * Begins a span with given name, if startup is being traced
+     * @param name    span name
+     * @return  span ID to end it with, or {@link #NO_SPAN} if not traced
+     * @see {@link #end(int)}
+     */
+    public static synchronized int begin(String name) {
+        if (!ENABLED || !sTracing || sCount == MAX_SPANS) {
+            return NO_SPAN;
+        }
+        sNames[sCount] = name;
+        sStartNanos[sCount] = System.nanoTime();
+        sEndNanos[sCount] = 0;
+        return sCount++;
+    }
+
+    /**
+     * Ends span of given ID, if it is still being traced
+     * @param span    span ID
+     * @see {@link #begin(String)}
+     */
+    public static synchronized void end(int span) {
+        if (!ENABLED || !sTracing || span == NO_SPAN || span >= sCount) {
+            return;
+        }
+        sEndNanos[span] = System.nanoTime();
+    }
+
+    /**
+     * Finishes current trace and logs its spans.
+     * Spans that have not ended by then are reported as unfinished
+     */
+    public static synchronized void finish() {
+        if (!ENABLED || !sTracing) {
+            return;
+        }
+        Log.i(TAG, format(System.nanoTime()));
+        sTracing = false;
+    }
+
+    /**
+     * Formats current trace as start offset and duration of each span, in milliseconds
+     * @param nowNanos    finish time in nanoseconds
+     * @return  formatted trace
+     */
+    @VisibleForTesting
+    static synchronized String format(long nowNanos) {
+        StringBuilder sb = new StringBuilder(String.format(Locale.US, "startup %.1fms:",
+                millis(nowNanos - sOriginNanos)));
+        for (int i = 0; i < sCount; i++) {
+            sb.append(String.format(Locale.US, " %s@%.1f", sNames[i],
+                    millis(sStartNanos[i] - sOriginNanos)));
+            if (sEndNanos[i] == 0) {
+                sb.append("+?");
+            } else {
+                sb.append(String.format(Locale.US, "+%.1f",
+                        millis(sEndNanos[i] - sStartNanos[i])));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,20 @@
+package io.github.hidroh.calendar;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Broadcast receiver that drops cached time zone data and formatted strings
+ * once default time zone or locale changes
+ * @see {@link CivilDate#invalidate()}
+ */
+public class TimeZoneReceiver extends BroadcastReceiver {
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (Intent.ACTION_TIMEZONE_CHANGED.equals(intent.getAction()) ||
+                Intent.ACTION_LOCALE_CHANGED.equals(intent.getAction())) {
+            CivilDate.invalidate();
+        }
+    }
+}
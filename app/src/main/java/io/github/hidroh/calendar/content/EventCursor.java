@@ -3,76 +3,203 @@ package io.github.hidroh.calendar.content;
 import android.database.Cursor;
 import android.database.CursorWrapper;
 import android.provider.CalendarContract;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+
+import io.github.hidroh.calendar.CalendarUtils;
 
 /**
- * {@link android.provider.CalendarContract.Events} cursor wrapper
+ * {@link android.provider.CalendarContract.Instances} cursor wrapper,
+ * each row is an occurrence of an event
  */
 public class EventCursor extends CursorWrapper {
 
     /**
-     * {@link android.provider.CalendarContract.Events} query projection
+     * {@link android.provider.CalendarContract.Instances} query projection of all columns
+     * @see Projection#ALL
      */
     public static final String[] PROJECTION = new String[]{
-            CalendarContract.Events._ID,
-            CalendarContract.Events.CALENDAR_ID,
-            CalendarContract.Events.TITLE,
-            CalendarContract.Events.DTSTART,
-            CalendarContract.Events.DTEND,
-            CalendarContract.Events.ALL_DAY
+            CalendarContract.Instances.EVENT_ID,
+            CalendarContract.Instances.CALENDAR_ID,
+            CalendarContract.Instances.TITLE,
+            CalendarContract.Instances.BEGIN,
+            CalendarContract.Instances.END,
+            CalendarContract.Instances.ALL_DAY
     };
-    private static final int PROJECTION_INDEX_ID = 0;
-    private static final int PROJECTION_INDEX_CALENDAR_ID = 1;
-    private static final int PROJECTION_INDEX_TITLE = 2;
-    private static final int PROJECTION_INDEX_DTSTART = 3;
-    private static final int PROJECTION_INDEX_DTEND = 4;
-    private static final int PROJECTION_INDEX_ALL_DAY = 5;
+
+    /**
+     * {@link android.provider.CalendarContract.Instances} query projection,
+     * which always has event ID, begin, end and all-day columns,
+     * and optionally calendar ID and title columns
+     */
+    public static class Projection {
+        private static final int COLUMN_CALENDAR_ID = 1;
+        private static final int COLUMN_TITLE = 1 << 1;
+        private static final Projection[] sProjections = new Projection[]{
+                new Projection(0),
+                new Projection(COLUMN_CALENDAR_ID),
+                new Projection(COLUMN_TITLE),
+                new Projection(COLUMN_CALENDAR_ID | COLUMN_TITLE)
+        };
+        /**
+         * Projection of all columns, same as {@link #PROJECTION}
+         */
+        public static final Projection ALL = sProjections[COLUMN_CALENDAR_ID | COLUMN_TITLE];
+
+        private final int mColumns;
+        private final String[] mColumnNames;
+
+        private Projection(int columns) {
+            mColumns = columns;
+            String[] columnNames = new String[PROJECTION.length];
+            int count = 0;
+            columnNames[count++] = CalendarContract.Instances.EVENT_ID;
+            if ((columns & COLUMN_CALENDAR_ID) != 0) {
+                columnNames[count++] = CalendarContract.Instances.CALENDAR_ID;
+            }
+            if ((columns & COLUMN_TITLE) != 0) {
+                columnNames[count++] = CalendarContract.Instances.TITLE;
+            }
+            columnNames[count++] = CalendarContract.Instances.BEGIN;
+            columnNames[count++] = CalendarContract.Instances.END;
+            columnNames[count++] = CalendarContract.Instances.ALL_DAY;
+            mColumnNames = Arrays.copyOf(columnNames, count);
+        }
+
+        /**
+         * Gets column names of this projection, to be used as query projection
+         * @return  column names
+         */
+        public String[] getColumnNames() {
+            return mColumnNames;
+        }
+
+        /**
+         * Checks if this projection has all columns of given projection
+         * @param projection    projection to check
+         * @return  true if this projection has all given columns, false otherwise
+         */
+        public boolean contains(@NonNull Projection projection) {
+            return (mColumns & projection.mColumns) == projection.mColumns;
+        }
+
+        /**
+         * Gets projection that has all columns of this and given projection
+         * @param projection    projection to combine with, or null
+         * @return  combined projection
+         */
+        public Projection union(@Nullable Projection projection) {
+            return projection == null ? this : sProjections[mColumns | projection.mColumns];
+        }
+
+        /**
+         * Builder to construct a {@link Projection} of only required columns
+         */
+        public static class Builder {
+            private int mColumns = 0;
+
+            /**
+             * Includes calendar ID column
+             * @return  this builder
+             * @see EventCursor#getCalendarId()
+             */
+            public Builder calendarId() {
+                mColumns |= COLUMN_CALENDAR_ID;
+                return this;
+            }
+
+            /**
+             * Includes title column
+             * @return  this builder
+             * @see EventCursor#getTitle()
+             */
+            public Builder title() {
+                mColumns |= COLUMN_TITLE;
+                return this;
+            }
+
+            /**
+             * Builds projection from included columns
+             * @return  projection
+             */
+            public Projection build() {
+                return sProjections[mColumns];
+            }
+        }
+    }
+
+    // column indices are resolved once, as projection may vary between cursors
+    private final int mEventIdIndex;
+    private final int mCalendarIdIndex;
+    private final int mTitleIndex;
+    private final int mBeginIndex;
+    private final int mEndIndex;
+    private final int mAllDayIndex;
 
     public EventCursor(Cursor cursor) {
         super(cursor);
+        mEventIdIndex = getColumnIndex(cursor, CalendarContract.Instances.EVENT_ID);
+        mCalendarIdIndex = getColumnIndex(cursor, CalendarContract.Instances.CALENDAR_ID);
+        mTitleIndex = getColumnIndex(cursor, CalendarContract.Instances.TITLE);
+        mBeginIndex = getColumnIndex(cursor, CalendarContract.Instances.BEGIN);
+        mEndIndex = getColumnIndex(cursor, CalendarContract.Instances.END);
+        mAllDayIndex = getColumnIndex(cursor, CalendarContract.Instances.ALL_DAY);
+    }
+
+    /**
+     * Gets projection of optional columns available in this cursor
+     * @return  cursor projection
+     */
+    public Projection getProjection() {
+        return Projection.sProjections[(mCalendarIdIndex >= 0 ? Projection.COLUMN_CALENDAR_ID : 0) |
+                (mTitleIndex >= 0 ? Projection.COLUMN_TITLE : 0)];
     }
 
     /**
-     * Gets event ID
+     * Gets ID of event that this instance belongs to,
+     * shared by all instances of a recurring event
      * @return  event ID
      */
     public long getId() {
-        return getLong(PROJECTION_INDEX_ID);
+        return getLong(mEventIdIndex);
     }
 
     /**
      * Gets event calendar ID
-     * @return  event calendar ID
+     * @return  event calendar ID, or 0 if not in projection
      */
     public long getCalendarId() {
-        return getLong(PROJECTION_INDEX_CALENDAR_ID);
+        return mCalendarIdIndex < 0 ? 0 : getLong(mCalendarIdIndex);
     }
 
     /**
      * Gets event title
-     * @return  event title
+     * @return  event title, or null if not in projection
      */
     public String getTitle() {
-        return getString(PROJECTION_INDEX_TITLE);
+        return mTitleIndex < 0 ? null : getString(mTitleIndex);
     }
 
     /**
-     * Gets start time in milliseconds.
+     * Gets instance start time in milliseconds.
      * If {@link #getAllDay()} is true, time will be midnight in UTC.
      * @return  start time in milliseconds
      * @see {@link #getAllDay()}
      */
     public long getDateTimeStart() {
-        return getLong(PROJECTION_INDEX_DTSTART);
+        return getLong(mBeginIndex);
     }
 
     /**
-     * Gets end time in milliseconds.
+     * Gets instance end time in milliseconds.
      * If {@link #getAllDay()} is true, time will be midnight in UTC.
      * @return  end time in milliseconds
      * @see {@link #getAllDay()}
      */
     public long getDateTimeEnd() {
-        return getLong(PROJECTION_INDEX_DTEND);
+        return getLong(mEndIndex);
     }
 
     /**
@@ -82,6 +209,27 @@ public class EventCursor extends CursorWrapper {
      * @see {@link #getDateTimeEnd()}
      */
     public boolean getAllDay() {
-        return getInt(PROJECTION_INDEX_ALL_DAY) == 1;
+        return getInt(mAllDayIndex) == 1;
+    }
+
+    /**
+     * Checks if instance at current position falls within given period in local time,
+     * i.e. it either starts within the period, or starts before and ends after its start
+     * @param startTimeMillis    start time in milliseconds
+     * @param endTimeMillis      end time in milliseconds
+     * @return  true if instance is within given period, false otherwise
+     */
+    public boolean isWithin(long startTimeMillis, long endTimeMillis) {
+        long start = getDateTimeStart(), end = getDateTimeEnd();
+        // all-day time in Calendar Provider is midnight in UTC, need to convert to local
+        if (getAllDay()) {
+            start = CalendarUtils.toLocalTimeZone(start);
+            end = CalendarUtils.toLocalTimeZone(end);
+        }
+        return start < endTimeMillis && (start >= startTimeMillis || end > startTimeMillis);
+    }
+
+    private static int getColumnIndex(Cursor cursor, String columnName) {
+        return cursor == null ? -1 : cursor.getColumnIndex(columnName);
     }
 }
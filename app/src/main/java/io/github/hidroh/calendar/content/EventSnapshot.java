@@ -0,0 +1,212 @@
+package io.github.hidroh.calendar.content;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+import android.support.v4.util.LongSparseArray;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compact binary file of month {@link EventTable}s, used to show last known events
+ * before Calendar Provider has been queried on cold start.
+ * File is only valid for the time zone it has been written in, as months are keyed
+ * by their first day in local time
+ */
+class EventSnapshot {
+    private static final String TAG = EventSnapshot.class.getSimpleName();
+    private static final int MAGIC = 0x45564e54; // EVNT
+    @VisibleForTesting static final int VERSION = 1;
+    private static final int FLAG_CALENDAR_ID = 1;
+    private static final int FLAG_TITLE = 1 << 1;
+    private static final EventCursor.Projection CALENDAR_ID =
+            new EventCursor.Projection.Builder().calendarId().build();
+    private static final EventCursor.Projection TITLE =
+            new EventCursor.Projection.Builder().title().build();
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final long KEEP_ALIVE_SECONDS = 10;
+    private static final ThreadPoolExecutor sExecutor = new ThreadPoolExecutor(1, 1,
+            KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+
+    static {
+        sExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    private final File mFile;
+
+    EventSnapshot(@NonNull File file) {
+        mFile = file;
+    }
+
+    /**
+     * Writes given month tables to file on a single background thread,
+     * replacing previous snapshot once done
+     * @param months    tables keyed by first day of month in milliseconds,
+     *                  which must not be modified afterwards
+     */
+    void save(@NonNull final LongSparseArray<EventTable> months) {
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(months);
+            }
+        });
+    }
+
+    /**
+     * Reads month tables from memory-mapped file.
+     * Tables of a missing, corrupted or outdated file are not returned
+     * @return  tables keyed by first day of month in milliseconds
+     */
+    @NonNull
+    LongSparseArray<EventTable> read() {
+        LongSparseArray<EventTable> months = new LongSparseArray<>();
+        if (!mFile.exists()) {
+            return months;
+        }
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(mFile);
+            FileChannel channel = in.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION ||
+                    !TimeZone.getDefault().getID().equals(readString(buffer))) {
+                return months;
+            }
+            // pool titles to avoid duplicated strings, e.g. from recurring events
+            Map<String, String> titles = new HashMap<>();
+            for (int month = buffer.getInt(); month > 0; month--) {
+                long monthMillis = buffer.getLong();
+                int flags = buffer.getInt();
+                EventCursor.Projection.Builder builder = new EventCursor.Projection.Builder();
+                if ((flags & FLAG_CALENDAR_ID) != 0) {
+                    builder.calendarId();
+                }
+                if ((flags & FLAG_TITLE) != 0) {
+                    builder.title();
+                }
+                int size = buffer.getInt();
+                if (size < 0 || size > buffer.remaining()) {
+                    throw new BufferUnderflowException();
+                }
+                EventTable table = new EventTable(size, builder.build());
+                for (int i = 0; i < size; i++) {
+                    long id = buffer.getLong(), calendarId = buffer.getLong();
+                    String title = readString(buffer);
+                    if (title != null) {
+                        String pooled = titles.get(title);
+                        if (pooled == null) {
+                            titles.put(title, title);
+                        } else {
+                            title = pooled;
+                        }
+                    }
+                    table.add(id, calendarId, title,
+                            buffer.getLong(), buffer.getLong(), buffer.get() != 0);
+                }
+                table.mStale = true;
+                months.put(monthMillis, table);
+            }
+        } catch (IOException | RuntimeException e) {
+            // never fail to start because of a bad snapshot, queries will catch up
+            Log.w(TAG, "Unable to read event snapshot", e);
+            months.clear();
+        } finally {
+            close(in);
+        }
+        return months;
+    }
+
+    /**
+     * Writes given month tables to file on current thread
+     * @param months    tables keyed by first day of month in milliseconds
+     */
+    @VisibleForTesting
+    void write(LongSparseArray<EventTable> months) {
+        File temp = new File(mFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, TimeZone.getDefault().getID());
+            out.writeInt(months.size());
+            for (int month = 0; month < months.size(); month++) {
+                EventTable table = months.valueAt(month);
+                EventCursor.Projection projection = table.mProjection;
+                out.writeLong(months.keyAt(month));
+                out.writeInt((projection.contains(CALENDAR_ID) ? FLAG_CALENDAR_ID : 0) |
+                        (projection.contains(TITLE) ? FLAG_TITLE : 0));
+                out.writeInt(table.mSize);
+                for (int i = 0; i < table.mSize; i++) {
+                    out.writeLong(table.mIds[i]);
+                    out.writeLong(table.mCalendarIds[i]);
+                    writeString(out, table.mTitles[i]);
+                    out.writeLong(table.mBegins[i]);
+                    out.writeLong(table.mEnds[i]);
+                    out.writeByte(table.mAllDays[i] ? 1 : 0);
+                }
+            }
+            out.close();
+            out = null;
+            // replace previous snapshot at once, so that it is never read half written
+            if (!temp.renameTo(mFile)) {
+                temp.delete();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write event snapshot", e);
+            close(out);
+            temp.delete();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // no-op
+        }
+    }
+}
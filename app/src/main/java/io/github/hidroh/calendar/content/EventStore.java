@@ -0,0 +1,637 @@
+package io.github.hidroh.calendar.content;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.CalendarContract;
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+import android.support.v4.util.LongSparseArray;
+import android.support.v4.util.LruCache;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.github.hidroh.calendar.CalendarUtils;
+
+/**
+ * Process-wide in-memory store of event instances, shared by month and agenda views.
+ * Instances are loaded from Calendar Provider once per month into compact {@link EventTable}s,
+ * bounded to {@link #MAX_MONTHS} least recently used months, which are dropped once any event changes.
+ * Bursts of change notifications within {@link #CHANGE_DELAY_MILLIS} are collapsed
+ * into one reload.
+ * Months are loaded with only columns requested for them, e.g. without titles for month view,
+ * and reloaded with combined columns once a request needs more.
+ * Months of pending requests are loaded before prefetched ones, and prefetches that have
+ * not started are dropped once more than {@link #MAX_PREFETCH_MONTHS} are queued.
+ * Months within {@link #SNAPSHOT_MONTHS} of today are persisted as an {@link EventSnapshot},
+ * which is served on cold start until reloaded from Calendar Provider.
+ * Failed queries leave months as they are, and are retried while still requested
+ */
+public class EventStore {
+    @VisibleForTesting static final int MAX_MONTHS = 24;
+    @VisibleForTesting static final int MAX_PREFETCH_MONTHS = 4;
+    @VisibleForTesting static final long CHANGE_DELAY_MILLIS = 300;
+    @VisibleForTesting static final int SNAPSHOT_MONTHS = 1;
+    @VisibleForTesting static final long SNAPSHOT_DELAY_MILLIS = 1000;
+    @VisibleForTesting static final long RETRY_DELAY_MILLIS = 1000;
+    private static final long MAX_RETRY_DELAY_MILLIS = 60 * 1000;
+    private static final String SNAPSHOT_FILE = "events.snapshot";
+
+    /**
+     * Callback interface for events loaded from store
+     */
+    public interface Callback {
+        /**
+         * Fired on main thread once events for requested period are available
+         * @param cursor    {@link android.provider.CalendarContract.Instances} cursor wrapper,
+         *                  which should be closed by receiver when no longer needed
+         * @return  true if events have been used, false if they have been discarded,
+         *          e.g. as requested period is no longer shown
+         * @see {@link #getWastedCount()}
+         */
+        boolean onLoaded(EventCursor cursor);
+    }
+
+    private static EventStore sInstance;
+
+    @VisibleForTesting final MonthQueryHandler mHandler;
+    @VisibleForTesting final EventSnapshot mSnapshot;
+    @VisibleForTesting int mGeneration = 0;
+    private int mChangeCount = 0;
+    private int mAbsorbedChangeCount = 0;
+    private int mCancelledCount = 0;
+    private int mWastedCount = 0;
+    private boolean mChangePending = false;
+    private long mRetryDelayMillis = RETRY_DELAY_MILLIS;
+    private final Context mContext;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ContentObserver mContentObserver = new ContentObserver(mMainHandler) {
+        @Override
+        public void onChange(boolean selfChange) {
+            mChangeCount++;
+            // collapse bursts of changes, e.g. from sync adapters, into a single invalidation
+            if (mChangePending) {
+                mAbsorbedChangeCount++;
+            } else {
+                mChangePending = true;
+                mMainHandler.postDelayed(mInvalidateRunnable, CHANGE_DELAY_MILLIS);
+            }
+        }
+    };
+    private final Runnable mInvalidateRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mChangePending = false;
+            invalidate();
+        }
+    };
+    private final Runnable mDispatchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            dispatch();
+        }
+    };
+    private final Runnable mLoadRunnable = new Runnable() {
+        @Override
+        public void run() {
+            startLoads();
+        }
+    };
+    private final Runnable mSnapshotRunnable = new Runnable() {
+        @Override
+        public void run() {
+            saveSnapshot();
+        }
+    };
+    private final Runnable mRetryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            for (Request request : mRequests) {
+                load(request);
+            }
+        }
+    };
+    private final LruCache<Long, EventTable> mMonths = new LruCache<>(MAX_MONTHS);
+    // projections of months being queried, and of months to be queried
+    private final LongSparseArray<EventCursor.Projection> mLoadingMonths = new LongSparseArray<>();
+    private final LongSparseArray<EventCursor.Projection> mPendingMonths = new LongSparseArray<>();
+    // months being loaded for prefetch only, oldest first
+    private final List<Long> mPrefetchMonths = new ArrayList<>();
+    private final List<Request> mRequests = new ArrayList<>();
+    // served cursors and requests they have been served for
+    private final Map<EventTable.TableCursor, Request> mCursors = new HashMap<>();
+
+    /**
+     * Gets event store for application of given context
+     * @param context    any context of application
+     * @return  event store
+     */
+    public static EventStore getInstance(Context context) {
+        Context appContext = context.getApplicationContext();
+        if (sInstance == null || sInstance.mContext != appContext) {
+            if (sInstance != null) {
+                sInstance.release();
+            }
+            sInstance = new EventStore(appContext);
+        }
+        return sInstance;
+    }
+
+    private EventStore(Context context) {
+        mContext = context;
+        ContentResolver contentResolver = context.getContentResolver();
+        mHandler = new MonthQueryHandler(contentResolver, this);
+        contentResolver.registerContentObserver(CalendarContract.Events.CONTENT_URI, true,
+                mContentObserver);
+        mSnapshot = new EventSnapshot(new File(context.getCacheDir(), SNAPSHOT_FILE));
+        restoreSnapshot();
+    }
+
+    /**
+     * Queries event instances from given start time to given end time,
+     * which either start within the period, or start before and end within or after it.
+     * Results are served from memory if available, or loaded from Calendar Provider otherwise,
+     * and delivered asynchronously on main thread via given callback.
+     * Returned cursor notifies its content observers once loaded events become outdated.
+     * @param startTimeMillis        start time in milliseconds
+     * @param endTimeMillis          end time in milliseconds
+     * @param excludedCalendarIds    collection of excluded calendar IDs
+     * @param callback               callback to receive results
+     * @see {@link #query(long, long, Collection, EventCursor.Projection, Callback)}
+     */
+    public void query(long startTimeMillis, long endTimeMillis,
+                      @NonNull Collection<String> excludedCalendarIds,
+                      @NonNull Callback callback) {
+        query(startTimeMillis, endTimeMillis, excludedCalendarIds,
+                EventCursor.Projection.ALL, callback);
+    }
+
+    /**
+     * Queries given columns of event instances from given start time to given end time.
+     * Columns outside of given projection are not available from delivered cursor.
+     * @param startTimeMillis        start time in milliseconds
+     * @param endTimeMillis          end time in milliseconds
+     * @param excludedCalendarIds    collection of excluded calendar IDs
+     * @param projection             columns to query
+     * @param callback               callback to receive results
+     * @see {@link #query(long, long, Collection, Callback)}
+     */
+    public void query(long startTimeMillis, long endTimeMillis,
+                      @NonNull Collection<String> excludedCalendarIds,
+                      @NonNull EventCursor.Projection projection,
+                      @NonNull Callback callback) {
+        Request request = new Request(startTimeMillis, endTimeMillis,
+                excludedCalendarIds, projection, callback);
+        mRequests.add(request);
+        if (load(request)) {
+            mMainHandler.post(mDispatchRunnable);
+        }
+    }
+
+    /**
+     * Gets number of Calendar Provider change notifications received
+     * @return  number of change notifications
+     */
+    public int getChangeCount() {
+        return mChangeCount;
+    }
+
+    /**
+     * Gets number of Calendar Provider change notifications that have been collapsed
+     * into an already pending invalidation, instead of triggering their own reloads
+     * @return  number of absorbed change notifications
+     */
+    public int getAbsorbedChangeCount() {
+        return mAbsorbedChangeCount;
+    }
+
+    /**
+     * Cancels pending requests of given callback, which will then not be called for them.
+     * Calendar Provider queries that have not started and are no longer needed
+     * by other requests are cancelled as well
+     * @param callback    callback of requests to cancel
+     * @see {@link #getCancelledCount()}
+     */
+    public void cancel(@NonNull Callback callback) {
+        for (int i = mRequests.size() - 1; i >= 0; i--) {
+            Request request = mRequests.get(i);
+            if (request.mCallback != callback) {
+                continue;
+            }
+            mRequests.remove(i);
+            mCancelledCount++;
+            for (long monthMillis = CalendarUtils.monthFirstDay(request.mStartTimeMillis);
+                 monthMillis < request.mEndTimeMillis;
+                 monthMillis = CalendarUtils.addMonths(monthMillis, 1)) {
+                if (isRequested(monthMillis)) {
+                    continue;
+                }
+                mPendingMonths.remove(monthMillis);
+                if (mLoadingMonths.get(monthMillis) != null &&
+                        mHandler.cancelQuery(mGeneration, monthMillis)) {
+                    mLoadingMonths.remove(monthMillis);
+                    mPrefetchMonths.remove(monthMillis);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets number of requests that have been cancelled before events were delivered
+     * @return  number of cancelled requests
+     * @see {@link #cancel(Callback)}
+     */
+    public int getCancelledCount() {
+        return mCancelledCount;
+    }
+
+    /**
+     * Gets number of requests whose events have been delivered but discarded by receivers
+     * @return  number of wasted requests
+     * @see {@link Callback#onLoaded(EventCursor)}
+     */
+    public int getWastedCount() {
+        return mWastedCount;
+    }
+
+    /**
+     * Loads events for given month in background if not yet in memory,
+     * so that later queries for it can be served without waiting for Calendar Provider
+     * @param monthMillis    month in milliseconds
+     * @param projection     columns to load
+     */
+    public void prefetch(long monthMillis, @NonNull EventCursor.Projection projection) {
+        loadMonth(CalendarUtils.monthFirstDay(monthMillis), projection, false);
+    }
+
+    void onMonthLoaded(int generation, long monthMillis, EventCursor cursor) {
+        if (generation != mGeneration) {
+            // outdated, pending requests have been reloaded upon invalidation
+            close(cursor);
+            return;
+        }
+        if (cursor.getWrappedCursor() == null) {
+            onMonthFailed(monthMillis);
+            return;
+        }
+        mRetryDelayMillis = RETRY_DELAY_MILLIS;
+        EventTable table = EventTable.from(cursor);
+        close(cursor);
+        EventCursor.Projection loading = mLoadingMonths.get(monthMillis);
+        if (loading != null && table.mProjection.contains(loading)) {
+            mLoadingMonths.remove(monthMillis);
+            mPrefetchMonths.remove(monthMillis);
+        }
+        // narrower query may complete after a wider one, keep the wider table,
+        // unless it is from snapshot
+        EventTable existing = mMonths.get(monthMillis);
+        if (existing == null || existing.mStale ||
+                table.mProjection.contains(existing.mProjection)) {
+            mMonths.put(monthMillis, table);
+            if (isInSnapshot(monthMillis)) {
+                mMainHandler.removeCallbacks(mSnapshotRunnable);
+                mMainHandler.postDelayed(mSnapshotRunnable, SNAPSHOT_DELAY_MILLIS);
+            }
+        }
+        if (existing != null && existing.mStale && !existing.contentEquals(table)) {
+            // events served from snapshot are outdated
+            notifyCursors(monthMillis);
+        }
+        dispatch();
+    }
+
+    /**
+     * Keeps whatever is in memory for given month after its query has failed, e.g. as provider
+     * is unavailable, and retries pending requests later with increasing delays
+     * @param monthMillis    first day of month in milliseconds
+     */
+    private void onMonthFailed(long monthMillis) {
+        mLoadingMonths.remove(monthMillis);
+        mPrefetchMonths.remove(monthMillis);
+        if (!isRequested(monthMillis)) {
+            return; // prefetch, will be loaded once requested
+        }
+        mMainHandler.removeCallbacks(mRetryRunnable);
+        mMainHandler.postDelayed(mRetryRunnable, mRetryDelayMillis);
+        mRetryDelayMillis = Math.min(mRetryDelayMillis * 2, MAX_RETRY_DELAY_MILLIS);
+    }
+
+    /**
+     * Serves months from snapshot, if any, until they are reloaded
+     */
+    @VisibleForTesting
+    void restoreSnapshot() {
+        LongSparseArray<EventTable> months = mSnapshot.read();
+        for (int i = 0; i < months.size(); i++) {
+            if (mMonths.get(months.keyAt(i)) == null) {
+                mMonths.put(months.keyAt(i), months.valueAt(i));
+            }
+        }
+    }
+
+    private void saveSnapshot() {
+        LongSparseArray<EventTable> months = new LongSparseArray<>();
+        long monthMillis = CalendarUtils.addMonths(
+                CalendarUtils.monthFirstDay(CalendarUtils.today()), -SNAPSHOT_MONTHS);
+        for (int i = 0; i <= SNAPSHOT_MONTHS * 2; i++) {
+            EventTable table = mMonths.get(monthMillis);
+            if (table != null) {
+                months.put(monthMillis, table);
+            }
+            monthMillis = CalendarUtils.addMonths(monthMillis, 1);
+        }
+        if (months.size() > 0) {
+            mSnapshot.save(months);
+        }
+    }
+
+    private boolean isInSnapshot(long monthMillis) {
+        long todayMonthMillis = CalendarUtils.monthFirstDay(CalendarUtils.today());
+        return monthMillis >= CalendarUtils.addMonths(todayMonthMillis, -SNAPSHOT_MONTHS) &&
+                monthMillis <= CalendarUtils.addMonths(todayMonthMillis, SNAPSHOT_MONTHS);
+    }
+
+    private static void close(EventCursor cursor) {
+        if (cursor.getWrappedCursor() != null) { // null if query has failed
+            cursor.close();
+        }
+    }
+
+    /**
+     * Starts loading months of given request that are not yet in memory
+     * @param request    request to load
+     * @return  true if all months are already in memory, false otherwise
+     */
+    private boolean load(Request request) {
+        boolean loaded = true;
+        for (long monthMillis = CalendarUtils.monthFirstDay(request.mStartTimeMillis);
+             monthMillis < request.mEndTimeMillis;
+             monthMillis = CalendarUtils.addMonths(monthMillis, 1)) {
+            loaded &= loadMonth(monthMillis, request.mProjection, true);
+        }
+        return loaded;
+    }
+
+    /**
+     * Schedules loading given columns of given month if they are neither in memory
+     * nor being loaded. Loads scheduled in the same main loop pass are combined
+     * into one query per month. Months served from snapshot are reloaded once
+     * @param monthMillis    first day of month in milliseconds
+     * @param projection     columns to load
+     * @param requested      true if month is needed by a pending request, false if prefetched
+     * @return  true if month columns are already in memory, false otherwise
+     */
+    private boolean loadMonth(long monthMillis, EventCursor.Projection projection,
+                              boolean requested) {
+        EventTable table = mMonths.get(monthMillis);
+        if (table != null) {
+            if (table.mProjection.contains(projection)) {
+                if (table.mStale) {
+                    scheduleLoad(monthMillis, table.mProjection, requested);
+                }
+                return true;
+            }
+            projection = projection.union(table.mProjection);
+        }
+        scheduleLoad(monthMillis, projection, requested);
+        return false;
+    }
+
+    private void scheduleLoad(long monthMillis, EventCursor.Projection projection,
+                              boolean requested) {
+        EventCursor.Projection loading = mLoadingMonths.get(monthMillis);
+        if (loading != null && requested && cancelPrefetch(monthMillis)) {
+            // queued prefetch is superseded by request, load again with higher priority
+            projection = projection.union(loading);
+            loading = null;
+        }
+        if (loading != null && loading.contains(projection)) {
+            return;
+        }
+        if (mPendingMonths.size() == 0) {
+            mMainHandler.post(mLoadRunnable);
+        }
+        mPendingMonths.put(monthMillis, projection.union(mPendingMonths.get(monthMillis)));
+    }
+
+    private void startLoads() {
+        for (int i = 0; i < mPendingMonths.size(); i++) {
+            long monthMillis = mPendingMonths.keyAt(i);
+            EventCursor.Projection projection = mPendingMonths.valueAt(i)
+                    .union(mLoadingMonths.get(monthMillis));
+            mLoadingMonths.put(monthMillis, projection);
+            boolean requested = isRequested(monthMillis);
+            mHandler.startQuery(mGeneration, monthMillis, monthMillis,
+                    CalendarUtils.addMonths(monthMillis, 1), projection, requested ?
+                            EventsQueryHandler.PRIORITY_VISIBLE :
+                            EventsQueryHandler.PRIORITY_PREFETCH);
+            if (!requested && !mPrefetchMonths.contains(monthMillis)) {
+                mPrefetchMonths.add(monthMillis);
+            }
+        }
+        mPendingMonths.clear();
+        // user has moved on, drop oldest prefetches that are yet to start
+        while (mPrefetchMonths.size() > MAX_PREFETCH_MONTHS) {
+            cancelPrefetch(mPrefetchMonths.get(0));
+        }
+    }
+
+    /**
+     * Checks if given month is needed by any pending request
+     * @param monthMillis    first day of month in milliseconds
+     * @return  true if month is requested, false otherwise
+     */
+    private boolean isRequested(long monthMillis) {
+        for (Request request : mRequests) {
+            if (request.includes(monthMillis)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stops tracking given month as prefetch, and cancels its query if it has not started
+     * @param monthMillis    first day of month in milliseconds
+     * @return  true if query has been cancelled, false otherwise
+     */
+    private boolean cancelPrefetch(long monthMillis) {
+        if (mPrefetchMonths.remove(monthMillis) && mHandler.cancelQuery(mGeneration, monthMillis)) {
+            mLoadingMonths.remove(monthMillis);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Cancels queries of loading months that have not started
+     */
+    private void cancelLoads() {
+        for (int i = 0; i < mLoadingMonths.size(); i++) {
+            mHandler.cancelQuery(mGeneration, mLoadingMonths.keyAt(i));
+        }
+        mLoadingMonths.clear();
+        mPendingMonths.clear();
+        mPrefetchMonths.clear();
+    }
+
+    private void dispatch() {
+        List<Request> completed = new ArrayList<>();
+        List<EventTable> results = new ArrayList<>();
+        for (int i = mRequests.size() - 1; i >= 0; i--) {
+            EventTable result = collect(mRequests.get(i));
+            if (result != null) {
+                completed.add(mRequests.remove(i));
+                results.add(result);
+            } else {
+                // months of pending requests may have been evicted in favor of newer ones
+                load(mRequests.get(i));
+            }
+        }
+        // callbacks may issue new requests, only call them once requests have been updated
+        for (int i = completed.size() - 1; i >= 0; i--) {
+            EventTable.TableCursor cursor = new EventTable.TableCursor(results.get(i)) {
+                @Override
+                public void close() {
+                    super.close();
+                    mCursors.remove(this);
+                }
+            };
+            mCursors.put(cursor, completed.get(i));
+            if (!completed.get(i).mCallback.onLoaded(new EventCursor(cursor))) {
+                mWastedCount++;
+            }
+        }
+    }
+
+    /**
+     * Collects instances of given request from loaded months
+     * @param request    request to collect instances for
+     * @return  table of requested instances, or null if not all months have been loaded
+     */
+    private EventTable collect(Request request) {
+        long startTimeMillis = request.mStartTimeMillis,
+                endTimeMillis = request.mEndTimeMillis,
+                firstMonthMillis = CalendarUtils.monthFirstDay(startTimeMillis);
+        long[] excludedCalendarIds = new long[request.mExcludedCalendarIds.size()];
+        int excludedCount = 0;
+        for (String calendarId : request.mExcludedCalendarIds) {
+            excludedCalendarIds[excludedCount++] = Long.parseLong(calendarId);
+        }
+        Arrays.sort(excludedCalendarIds);
+        EventTable result = new EventTable(0, request.mProjection);
+        for (long monthMillis = firstMonthMillis; monthMillis < endTimeMillis;
+             monthMillis = CalendarUtils.addMonths(monthMillis, 1)) {
+            EventTable table = mMonths.get(monthMillis);
+            if (table == null || !table.mProjection.contains(request.mProjection)) {
+                return null;
+            }
+            long nextMonthMillis = CalendarUtils.addMonths(monthMillis, 1);
+            for (int i = 0; i < table.mSize; i++) {
+                long begin = table.localBegin(i), end = table.localEnd(i);
+                // instances may be in multiple months, e.g. if they span months or are all day
+                // events behind UTC, take from month that contains their start only
+                if (monthMillis != firstMonthMillis && begin < monthMillis ||
+                        begin >= nextMonthMillis) {
+                    continue;
+                }
+                // same as query: starts within period, or starts before and ends after its start
+                if (begin >= endTimeMillis || begin < startTimeMillis && end <= startTimeMillis) {
+                    continue;
+                }
+                if (Arrays.binarySearch(excludedCalendarIds, table.mCalendarIds[i]) >= 0) {
+                    continue;
+                }
+                result.add(table, i);
+            }
+        }
+        return result;
+    }
+
+    private void invalidate() {
+        mMainHandler.removeCallbacks(mRetryRunnable);
+        cancelLoads();
+        mGeneration++;
+        mMonths.evictAll();
+        for (Request request : mRequests) {
+            load(request);
+        }
+        notifyCursors(CalendarUtils.NO_TIME_MILLIS);
+    }
+
+    /**
+     * Notifies served cursors that include given month that their events have changed
+     * @param monthMillis    first day of month in milliseconds,
+     *                       or {@link CalendarUtils#NO_TIME_MILLIS} for all cursors
+     */
+    private void notifyCursors(long monthMillis) {
+        for (Map.Entry<EventTable.TableCursor, Request> entry :
+                new ArrayList<>(mCursors.entrySet())) {
+            if (CalendarUtils.isNotTime(monthMillis) || entry.getValue().includes(monthMillis)) {
+                entry.getKey().notifyChange();
+            }
+        }
+    }
+
+    private void release() {
+        mContext.getContentResolver().unregisterContentObserver(mContentObserver);
+        mMainHandler.removeCallbacks(mDispatchRunnable);
+        mMainHandler.removeCallbacks(mInvalidateRunnable);
+        mMainHandler.removeCallbacks(mLoadRunnable);
+        mMainHandler.removeCallbacks(mSnapshotRunnable);
+        mMainHandler.removeCallbacks(mRetryRunnable);
+        cancelLoads();
+        mRequests.clear();
+    }
+
+    private static class Request {
+        final long mStartTimeMillis;
+        final long mEndTimeMillis;
+        final Collection<String> mExcludedCalendarIds;
+        final EventCursor.Projection mProjection;
+        final Callback mCallback;
+
+        Request(long startTimeMillis, long endTimeMillis,
+                Collection<String> excludedCalendarIds, EventCursor.Projection projection,
+                Callback callback) {
+            mStartTimeMillis = startTimeMillis;
+            mEndTimeMillis = endTimeMillis;
+            mExcludedCalendarIds = excludedCalendarIds;
+            mProjection = projection;
+            mCallback = callback;
+        }
+
+        /**
+         * Checks if given month is needed to serve this request
+         * @param monthMillis    first day of month in milliseconds
+         * @return  true if month is needed, false otherwise
+         */
+        boolean includes(long monthMillis) {
+            return monthMillis < mEndTimeMillis &&
+                    monthMillis >= CalendarUtils.monthFirstDay(mStartTimeMillis);
+        }
+    }
+
+    static class MonthQueryHandler extends EventsQueryHandler {
+        private final EventStore mEventStore;
+
+        MonthQueryHandler(ContentResolver cr, EventStore eventStore) {
+            super(cr, Collections.<String>emptySet(), true);
+            mEventStore = eventStore;
+        }
+
+        @Override
+        protected void handleQueryComplete(int token, Object cookie, EventCursor cursor) {
+            mEventStore.onMonthLoaded(token, (Long) cookie, cursor);
+        }
+    }
+}
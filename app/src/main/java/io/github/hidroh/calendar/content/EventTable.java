@@ -0,0 +1,244 @@
+package io.github.hidroh.calendar.content;
+
+import android.database.AbstractCursor;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.github.hidroh.calendar.CalendarUtils;
+
+/**
+ * Compact in-memory table of event instances, one primitive array per
+ * {@link EventCursor#PROJECTION} column. Columns outside of table projection are left empty
+ */
+class EventTable {
+    private static final int PROJECTION_INDEX_EVENT_ID = 0;
+    private static final int PROJECTION_INDEX_CALENDAR_ID = 1;
+    private static final int PROJECTION_INDEX_TITLE = 2;
+    private static final int PROJECTION_INDEX_BEGIN = 3;
+    private static final int PROJECTION_INDEX_END = 4;
+    private static final int PROJECTION_INDEX_ALL_DAY = 5;
+
+    final EventCursor.Projection mProjection;
+    boolean mStale = false; // restored from snapshot, yet to be reloaded from provider
+    int mSize = 0;
+    long[] mIds;
+    long[] mCalendarIds;
+    String[] mTitles;
+    long[] mBegins;
+    long[] mEnds;
+    boolean[] mAllDays;
+
+    EventTable(int capacity, EventCursor.Projection projection) {
+        mProjection = projection;
+        mIds = new long[capacity];
+        mCalendarIds = new long[capacity];
+        mTitles = new String[capacity];
+        mBegins = new long[capacity];
+        mEnds = new long[capacity];
+        mAllDays = new boolean[capacity];
+    }
+
+    /**
+     * Reads all rows from given cursor into a new table,
+     * or gets table of given cursor if it is already a snapshot
+     * @param cursor    {@link android.provider.CalendarContract.Instances} cursor wrapper,
+     *                  of a successful query
+     * @return  table of given cursor rows, with projection of given cursor
+     */
+    static EventTable from(EventCursor cursor) {
+        if (cursor.getWrappedCursor() instanceof TableCursor) {
+            return ((TableCursor) cursor.getWrappedCursor()).mTable;
+        }
+        if (cursor.getCount() == 0) {
+            // no events, empty table satisfies any projection
+            return new EventTable(0, EventCursor.Projection.ALL);
+        }
+        // pool titles to avoid duplicated strings, e.g. from recurring events
+        Map<String, String> titles = new HashMap<>();
+        EventTable table = new EventTable(cursor.getCount(), cursor.getProjection());
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            String title = cursor.getTitle();
+            if (title != null) {
+                String pooled = titles.get(title);
+                if (pooled == null) {
+                    titles.put(title, title);
+                } else {
+                    title = pooled;
+                }
+            }
+            table.add(cursor.getId(), cursor.getCalendarId(), title,
+                    cursor.getDateTimeStart(), cursor.getDateTimeEnd(), cursor.getAllDay());
+        }
+        return table;
+    }
+
+    /**
+     * Adds row at given index from given table into this table
+     * @param source    source table
+     * @param index     row index in source table
+     */
+    void add(EventTable source, int index) {
+        add(source.mIds[index], source.mCalendarIds[index], source.mTitles[index],
+                source.mBegins[index], source.mEnds[index], source.mAllDays[index]);
+    }
+
+    /**
+     * Checks if given table has the same projection and rows as this table
+     * @param other    table to compare
+     * @return  true if tables have same content, false otherwise
+     */
+    boolean contentEquals(EventTable other) {
+        if (mSize != other.mSize || mProjection != other.mProjection) {
+            return false;
+        }
+        for (int i = 0; i < mSize; i++) {
+            if (mIds[i] != other.mIds[i] || mCalendarIds[i] != other.mCalendarIds[i] ||
+                    mBegins[i] != other.mBegins[i] || mEnds[i] != other.mEnds[i] ||
+                    mAllDays[i] != other.mAllDays[i] ||
+                    (mTitles[i] == null ? other.mTitles[i] != null :
+                            !mTitles[i].equals(other.mTitles[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets start time of row at given index in local time zone
+     * @param index    row index
+     * @return  start time in milliseconds
+     */
+    long localBegin(int index) {
+        return mAllDays[index] ? CalendarUtils.toLocalTimeZone(mBegins[index]) : mBegins[index];
+    }
+
+    /**
+     * Gets end time of row at given index in local time zone
+     * @param index    row index
+     * @return  end time in milliseconds
+     */
+    long localEnd(int index) {
+        return mAllDays[index] ? CalendarUtils.toLocalTimeZone(mEnds[index]) : mEnds[index];
+    }
+
+    /**
+     * Adds given row into this table
+     * @param id            event ID
+     * @param calendarId    calendar ID
+     * @param title         event title
+     * @param begin         start time in milliseconds
+     * @param end           end time in milliseconds
+     * @param allDay        true if all day event, false otherwise
+     */
+    void add(long id, long calendarId, String title, long begin, long end, boolean allDay) {
+        if (mSize == mIds.length) {
+            int capacity = Math.max(mSize * 2, 8);
+            mIds = Arrays.copyOf(mIds, capacity);
+            mCalendarIds = Arrays.copyOf(mCalendarIds, capacity);
+            mTitles = Arrays.copyOf(mTitles, capacity);
+            mBegins = Arrays.copyOf(mBegins, capacity);
+            mEnds = Arrays.copyOf(mEnds, capacity);
+            mAllDays = Arrays.copyOf(mAllDays, capacity);
+        }
+        mIds[mSize] = id;
+        mCalendarIds[mSize] = calendarId;
+        mTitles[mSize] = title;
+        mBegins[mSize] = begin;
+        mEnds[mSize] = end;
+        mAllDays[mSize] = allDay;
+        mSize++;
+    }
+
+    /**
+     * Read-only cursor over an {@link EventTable}, with columns of table projection
+     */
+    static class TableCursor extends AbstractCursor {
+        private final EventTable mTable;
+        private final String[] mColumnNames;
+        private final int[] mColumns; // cursor column index to PROJECTION_INDEX_*
+
+        TableCursor(EventTable table) {
+            mTable = table;
+            mColumnNames = table.mProjection.getColumnNames();
+            mColumns = new int[mColumnNames.length];
+            List<String> projection = Arrays.asList(EventCursor.PROJECTION);
+            for (int i = 0; i < mColumnNames.length; i++) {
+                mColumns[i] = projection.indexOf(mColumnNames[i]);
+            }
+        }
+
+        @Override
+        public int getCount() {
+            return mTable.mSize;
+        }
+
+        @Override
+        public String[] getColumnNames() {
+            return mColumnNames;
+        }
+
+        @Override
+        public String getString(int column) {
+            if (mColumns[column] == PROJECTION_INDEX_TITLE) {
+                return mTable.mTitles[getPosition()];
+            }
+            return String.valueOf(getLong(column));
+        }
+
+        @Override
+        public short getShort(int column) {
+            return (short) getLong(column);
+        }
+
+        @Override
+        public int getInt(int column) {
+            return (int) getLong(column);
+        }
+
+        @Override
+        public long getLong(int column) {
+            int position = getPosition();
+            switch (mColumns[column]) {
+                case PROJECTION_INDEX_EVENT_ID:
+                    return mTable.mIds[position];
+                case PROJECTION_INDEX_CALENDAR_ID:
+                    return mTable.mCalendarIds[position];
+                case PROJECTION_INDEX_BEGIN:
+                    return mTable.mBegins[position];
+                case PROJECTION_INDEX_END:
+                    return mTable.mEnds[position];
+                case PROJECTION_INDEX_ALL_DAY:
+                    return mTable.mAllDays[position] ? 1 : 0;
+                default:
+                    return 0;
+            }
+        }
+
+        @Override
+        public float getFloat(int column) {
+            return getLong(column);
+        }
+
+        @Override
+        public double getDouble(int column) {
+            return getLong(column);
+        }
+
+        @Override
+        public boolean isNull(int column) {
+            return mColumns[column] == PROJECTION_INDEX_TITLE &&
+                    mTable.mTitles[getPosition()] == null;
+        }
+
+        /**
+         * Notifies registered content observers that underlying data has changed
+         */
+        void notifyChange() {
+            onChange(false);
+        }
+    }
+}
@@ -2,73 +2,92 @@ package io.github.hidroh.calendar.content;
 
 import android.content.AsyncQueryHandler;
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
 import android.provider.CalendarContract;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.text.format.DateUtils;
+import android.util.SparseArray;
 
-import java.util.ArrayList;
+import java.lang.ref.WeakReference;
 import java.util.Collection;
-import java.util.Iterator;
-import java.util.List;
 
 import io.github.hidroh.calendar.CalendarUtils;
+import io.github.hidroh.calendar.StartupTrace;
 
 /**
- * Calendar Provider {@link AsyncQueryHandler} that queries for events
- * in a given time period
+ * Calendar Provider {@link AsyncQueryHandler} that queries for event instances
+ * in a given time period, with recurring events expanded by provider,
+ * and results filtered to instances within the period in local time.
+ * Queries run on a shared pool of background threads, in order of their priorities,
+ * instead of one after another on {@link AsyncQueryHandler} worker thread
  */
 public abstract class EventsQueryHandler extends AsyncQueryHandler {
 
-    private static final String SORT = CalendarContract.Events.DTSTART + " ASC";
+    /**
+     * Priority of queries for events being shown, which run before other queries
+     */
+    public static final int PRIORITY_VISIBLE = 0;
+    /**
+     * Priority of queries for events that may be shown later, which run after other queries
+     */
+    public static final int PRIORITY_PREFETCH = 1;
+
+    private static final String SORT = CalendarContract.Instances.BEGIN + " ASC";
     private static final String AND = " AND ";
-    private static final String OR = " OR ";
-    private static final String INT_TRUE = "1";
     private static final String INT_FALSE = "0";
-    private static final String ALL_DAY = CalendarContract.Events.ALL_DAY + "=?";
-    private static final String DELETED = CalendarContract.Events.DELETED + "=?";
-    private static final String NOT_CALENDAR_ID = CalendarContract.Events.CALENDAR_ID + "!=?";
-    // select events that starts within query range
-    private static final String START_WITHIN = "(" +
-            CalendarContract.Events.DTSTART + ">=?" + AND +
-            CalendarContract.Events.DTSTART + "<?" +
-            ")";
-    // select events that starts before but end within or after query range
-    private static final String START_BEF_END_WITHIN_AFTER = "(" +
-            CalendarContract.Events.DTSTART + "<?" + AND +
-            CalendarContract.Events.DTEND + ">?" +
-            ")";
-    // select non all-day events
-    private static final String SELECTION_NON_ALL_DAY_EVENTS = "(" +
-            ALL_DAY + AND +
-            "(" + START_WITHIN + OR + START_BEF_END_WITHIN_AFTER + ")" +
-            ")";
-    // select all-day events
-    private static final String SELECTION_ALL_DAY_EVENTS = "(" +
-            ALL_DAY + AND +
-            "(" + START_WITHIN + OR + START_BEF_END_WITHIN_AFTER + ")" +
-            ")";
-    // select non-deleted events from either set
-    private static final String SELECTION = "(" +
-            DELETED + AND + "(" + SELECTION_NON_ALL_DAY_EVENTS + OR + SELECTION_ALL_DAY_EVENTS + ")" +
-            ")";
+    private static final String DELETED = CalendarContract.Instances.DELETED + "=?";
+    private static final String NOT_IN_CALENDAR_IDS =
+            AND + CalendarContract.Instances.CALENDAR_ID + " NOT IN (";
+    // time range is part of query URI, only select non-deleted events
+    private static final String SELECTION = DELETED;
+    // selection only depends on number of excluded calendars, cache by that number
+    private static final SparseArray<String> sSelections = new SparseArray<>();
+    // same as AsyncQueryHandler worker message argument for query operations
+    private static final int EVENT_ARG_QUERY = 1;
 
     @NonNull
     private final Collection<String> mExcludedCalendarIds;
+    private final WeakReference<ContentResolver> mResolver;
+    private final boolean mSnapshot;
 
     /**
-     * Contrsucts an instance of async query handler for {@link android.provider.CalendarContract.Events}
+     * Contrsucts an instance of async query handler for {@link android.provider.CalendarContract.Instances}
      * @param cr                     content resolver
      * @param excludedCalendarIds    collection of excluded calendar IDs
      */
     public EventsQueryHandler(ContentResolver cr,
                               @NonNull Collection<String> excludedCalendarIds) {
+        this(cr, excludedCalendarIds, false);
+    }
+
+    /**
+     * Constructs an instance of async query handler for
+     * {@link android.provider.CalendarContract.Instances}, which optionally delivers
+     * in-memory snapshots of query results instead of provider cursors
+     * @param cr                     content resolver
+     * @param excludedCalendarIds    collection of excluded calendar IDs
+     * @param snapshot               true to drain and close provider cursors on worker thread,
+     *                               so that no cursor window is held once results are delivered
+     */
+    public EventsQueryHandler(ContentResolver cr,
+                              @NonNull Collection<String> excludedCalendarIds,
+                              boolean snapshot) {
         super(cr);
+        mResolver = new WeakReference<>(cr);
         mExcludedCalendarIds = excludedCalendarIds;
+        mSnapshot = snapshot;
     }
 
     /**
-     * Starts background query for events from given start time to given end time
+     * Starts background query for event instances from given start time to given end time,
+     * which either start within the period, or start before and end within or after it.
      * Results will be handled asynchronously on main thread
      * via {@link #handleQueryComplete(int, Object, EventCursor)}
      * @param cookie             cookie object to be passed back on complete
@@ -77,51 +96,257 @@ public abstract class EventsQueryHandler extends AsyncQueryHandler {
      * @see {@link #handleQueryComplete(int, Object, EventCursor)}
      */
     public final void startQuery(Object cookie, long startTimeMillis, long endTimeMillis) {
-        final String utcStart = String.valueOf(CalendarUtils.toUtcTimeZone(startTimeMillis)),
-                utcEnd = String.valueOf(CalendarUtils.toUtcTimeZone(endTimeMillis)),
-                localStart = String.valueOf(startTimeMillis),
-                localEnd = String.valueOf(endTimeMillis);
-        List<String> args = new ArrayList<String>() {{
-            add(INT_FALSE); // not deleted
-            add(INT_FALSE); // not all day
-            add(localStart);
-            add(localEnd);
-            add(localStart);
-            add(localStart);
-            add(INT_TRUE); // all day
-            add(utcStart);
-            add(utcEnd);
-            add(utcStart);
-            add(utcStart);
-        }};
-        StringBuilder sb = new StringBuilder(SELECTION);
-        if (!mExcludedCalendarIds.isEmpty()) {
-            Iterator<String> iterator = mExcludedCalendarIds.iterator();
-            sb.append(AND).append("(");
-            while (iterator.hasNext()) {
-                args.add(iterator.next());
-                sb.append(NOT_CALENDAR_ID);
-                if (iterator.hasNext()) {
-                    sb.append(AND);
+        startQuery(0, cookie, startTimeMillis, endTimeMillis);
+    }
+
+    /**
+     * Starts background query for event instances from given start time to given end time,
+     * which either start within the period, or start before and end within or after it.
+     * Results will be handled asynchronously on main thread
+     * via {@link #handleQueryComplete(int, Object, EventCursor)}
+     * @param token              token to be passed back on complete
+     * @param cookie             cookie object to be passed back on complete
+     * @param startTimeMillis    start time in milliseconds
+     * @param endTimeMillis      end time in milliseconds
+     * @see {@link #handleQueryComplete(int, Object, EventCursor)}
+     */
+    public final void startQuery(int token, Object cookie,
+                                 long startTimeMillis, long endTimeMillis) {
+        startQuery(token, cookie, startTimeMillis, endTimeMillis, EventCursor.Projection.ALL);
+    }
+
+    /**
+     * Starts background query for given columns of event instances
+     * from given start time to given end time,
+     * which either start within the period, or start before and end within or after it.
+     * Results will be handled asynchronously on main thread
+     * via {@link #handleQueryComplete(int, Object, EventCursor)}
+     * @param token              token to be passed back on complete
+     * @param cookie             cookie object to be passed back on complete
+     * @param startTimeMillis    start time in milliseconds
+     * @param endTimeMillis      end time in milliseconds
+     * @param projection         columns to query
+     * @see {@link #handleQueryComplete(int, Object, EventCursor)}
+     */
+    public final void startQuery(int token, Object cookie,
+                                 long startTimeMillis, long endTimeMillis,
+                                 @NonNull EventCursor.Projection projection) {
+        startQuery(token, cookie, startTimeMillis, endTimeMillis, projection, PRIORITY_VISIBLE);
+    }
+
+    /**
+     * Starts background query for given columns of event instances
+     * from given start time to given end time with given priority,
+     * which either start within the period, or start before and end within or after it.
+     * Results will be handled asynchronously on main thread
+     * via {@link #handleQueryComplete(int, Object, EventCursor)}
+     * @param token              token to be passed back on complete
+     * @param cookie             cookie object to be passed back on complete
+     * @param startTimeMillis    start time in milliseconds
+     * @param endTimeMillis      end time in milliseconds
+     * @param projection         columns to query
+     * @param priority           {@link #PRIORITY_VISIBLE} or {@link #PRIORITY_PREFETCH}
+     * @see {@link #handleQueryComplete(int, Object, EventCursor)}
+     * @see {@link #cancelQuery(int, Object)}
+     */
+    public final void startQuery(int token, Object cookie,
+                                 long startTimeMillis, long endTimeMillis,
+                                 @NonNull EventCursor.Projection projection,
+                                 int priority) {
+        startQuery(token, new QueryCookie(cookie, priority, StartupTrace.begin("query"),
+                        startTimeMillis, endTimeMillis),
+                buildUri(startTimeMillis, endTimeMillis),
+                projection.getColumnNames(),
+                buildSelection(mExcludedCalendarIds),
+                buildSelectionArgs(mExcludedCalendarIds),
+                SORT);
+    }
+
+    /**
+     * Cancels query of given token and cookie if it has not started yet,
+     * in which case it will not be handled. Query that has started will still complete.
+     * @param token     query token
+     * @param cookie    query cookie, compared by equality
+     * @return  true if query has been cancelled, false otherwise
+     */
+    public final boolean cancelQuery(int token, Object cookie) {
+        return QueryExecutor.getInstance().cancel(this, token, cookie);
+    }
+
+    /**
+     * Builds query URI for event instances from given start time to given end time,
+     * widened so that it covers all-day instances within the period in local time.
+     * Results should be filtered by {@link EventCursor#isWithin(long, long)}
+     * @param startTimeMillis    start time in milliseconds
+     * @param endTimeMillis      end time in milliseconds
+     * @return  query URI
+     * @see {@link RangeCursor}
+     */
+    @VisibleForTesting
+    static Uri buildUri(long startTimeMillis, long endTimeMillis) {
+        Uri.Builder builder = CalendarContract.Instances.CONTENT_URI.buildUpon();
+        // provider compares all-day instances in UTC, which is less than a day
+        // from local time, and its range is inclusive
+        ContentUris.appendId(builder, startTimeMillis - DateUtils.DAY_IN_MILLIS);
+        ContentUris.appendId(builder, endTimeMillis + DateUtils.DAY_IN_MILLIS - 1);
+        return builder.build();
+    }
+
+    /**
+     * Builds query selection for event instances, excluding given calendars
+     * @param excludedCalendarIds    collection of excluded calendar IDs
+     * @return  query selection
+     * @see {@link #buildSelectionArgs(Collection)}
+     */
+    @VisibleForTesting
+    static String buildSelection(@NonNull Collection<String> excludedCalendarIds) {
+        int excludedCount = excludedCalendarIds.size();
+        String selection = sSelections.get(excludedCount);
+        if (selection == null) {
+            if (excludedCount == 0) {
+                selection = SELECTION;
+            } else {
+                StringBuilder sb = new StringBuilder(SELECTION).append(NOT_IN_CALENDAR_IDS);
+                for (int i = 0; i < excludedCount; i++) {
+                    sb.append(i == 0 ? "?" : ",?");
                 }
+                selection = sb.append(")").toString();
             }
-            sb.append(")");
+            sSelections.put(excludedCount, selection);
+        }
+        return selection;
+    }
+
+    /**
+     * Builds query selection arguments for event instances, excluding given calendars
+     * @param excludedCalendarIds    collection of excluded calendar IDs
+     * @return  query selection arguments
+     * @see {@link #buildSelection(Collection)}
+     */
+    @VisibleForTesting
+    static String[] buildSelectionArgs(@NonNull Collection<String> excludedCalendarIds) {
+        String[] args = new String[excludedCalendarIds.size() + 1];
+        args[0] = INT_FALSE; // not deleted
+        int i = 1;
+        for (String calendarId : excludedCalendarIds) {
+            args[i++] = calendarId;
+        }
+        return args;
+    }
+
+    /**
+     * Drains given cursor into an immutable in-memory snapshot and closes it
+     * @param cursor    {@link android.provider.CalendarContract.Instances} cursor, or null
+     * @return  snapshot cursor, which is not backed by a cursor window,
+     *          or null if given cursor is null, i.e. query has failed
+     */
+    @VisibleForTesting
+    @Nullable
+    static Cursor snapshot(@Nullable Cursor cursor) {
+        if (cursor == null) {
+            return null;
         }
-        startQuery(0, cookie, CalendarContract.Events.CONTENT_URI,
-                EventCursor.PROJECTION, sb.toString(), args.toArray(new String[args.size()]), SORT);
+        EventTable table = EventTable.from(new EventCursor(cursor));
+        cursor.close();
+        return new EventTable.TableCursor(table);
+    }
+
+    @Override
+    protected Handler createHandler(Looper looper) {
+        // called from super constructor, snapshot mode is checked per query instead
+        return new QueryWorkerHandler(looper);
     }
 
     @Override
     protected final void onQueryComplete(int token, Object cookie, Cursor cursor) {
-        handleQueryComplete(token, cookie, new EventCursor(cursor));
+        if (cookie instanceof QueryCookie) {
+            StartupTrace.end(((QueryCookie) cookie).mSpan);
+        }
+        handleQueryComplete(token,
+                cookie instanceof QueryCookie ? ((QueryCookie) cookie).mCookie : cookie,
+                new EventCursor(cursor));
     }
 
     /**
      * Handles query results. This will be called on main thread.
      * @param token     query token
      * @param cookie    query cookie
-     * @param cursor    {@link android.provider.CalendarContract.Events} cursor wrapper
+     * @param cursor    {@link android.provider.CalendarContract.Instances} cursor wrapper
      * @see {@link #startQuery(int, Object, Uri, String[], String, String[], String)}
      */
     protected abstract void handleQueryComplete(int token, Object cookie, EventCursor cursor);
+
+    /**
+     * Worker handler that hands queries over to {@link QueryExecutor},
+     * and replaces query results with snapshots in snapshot mode
+     * @see {@link #snapshot(Cursor)}
+     */
+    private class QueryWorkerHandler extends WorkerHandler {
+
+        QueryWorkerHandler(Looper looper) {
+            super(looper);
+        }
+
+        @Override
+        public void handleMessage(Message msg) {
+            final ContentResolver resolver = mResolver.get();
+            if (msg.arg1 != EVENT_ARG_QUERY || resolver == null) {
+                super.handleMessage(msg);
+                return;
+            }
+            final int token = msg.what;
+            final WorkerArgs args = (WorkerArgs) msg.obj;
+            // queries started with raw URI have no period, results are delivered as is
+            final QueryCookie cookie = args.cookie instanceof QueryCookie ?
+                    (QueryCookie) args.cookie : new QueryCookie(args.cookie, PRIORITY_VISIBLE,
+                    StartupTrace.NO_SPAN, CalendarUtils.NO_TIME_MILLIS,
+                    CalendarUtils.NO_TIME_MILLIS);
+            QueryExecutor.getInstance().execute(new QueryExecutor.Task(EventsQueryHandler.this,
+                    token, cookie.mCookie, cookie.mPriority) {
+                @Override
+                public void run() {
+                    Cursor cursor;
+                    try {
+                        cursor = resolver.query(args.uri, args.projection, args.selection,
+                                args.selectionArgs, args.orderBy);
+                        if (cursor != null && !CalendarUtils.isNotTime(cookie.mStartTimeMillis)) {
+                            // also fills cursor window in background, same as super
+                            cursor = new RangeCursor(cursor, cookie.mStartTimeMillis,
+                                    cookie.mEndTimeMillis);
+                        } else if (cursor != null && !mSnapshot) {
+                            cursor.getCount(); // fill cursor window in background, same as super
+                        }
+                    } catch (Exception e) {
+                        cursor = null; // same as super, deliver as unavailable provider
+                    }
+                    args.result = mSnapshot ? snapshot(cursor) : cursor;
+                    // reply to main thread, same as super
+                    Message reply = args.handler.obtainMessage(token);
+                    reply.obj = args;
+                    reply.arg1 = EVENT_ARG_QUERY;
+                    reply.sendToTarget();
+                }
+            });
+        }
+    }
+
+    /**
+     * Query cookie with priority and queried period, unwrapped before results are handled
+     */
+    private static class QueryCookie {
+        final Object mCookie;
+        final int mPriority;
+        final int mSpan;
+        final long mStartTimeMillis;
+        final long mEndTimeMillis;
+
+        QueryCookie(Object cookie, int priority, int span,
+                    long startTimeMillis, long endTimeMillis) {
+            mCookie = cookie;
+            mPriority = priority;
+            mSpan = span;
+            mStartTimeMillis = startTimeMillis;
+            mEndTimeMillis = endTimeMillis;
+        }
+    }
 }
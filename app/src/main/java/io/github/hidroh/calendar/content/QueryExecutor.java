@@ -0,0 +1,114 @@
+package io.github.hidroh.calendar.content;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide pool of background threads for Calendar Provider queries,
+ * which runs up to {@link #POOL_SIZE} queries at a time, in order of priority then submission
+ */
+class QueryExecutor {
+    @VisibleForTesting static final int POOL_SIZE = 3;
+    private static final long KEEP_ALIVE_SECONDS = 10;
+
+    private static QueryExecutor sInstance;
+
+    private final ThreadPoolExecutor mExecutor;
+    private final AtomicLong mSequence = new AtomicLong();
+
+    /**
+     * Gets shared query executor
+     * @return  query executor
+     */
+    static synchronized QueryExecutor getInstance() {
+        if (sInstance == null) {
+            sInstance = new QueryExecutor();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    QueryExecutor() {
+        mExecutor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(@NonNull Runnable runnable) {
+                        return new Thread(runnable, "QueryExecutor #" + mCount.incrementAndGet());
+                    }
+                });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues given task to run on a background thread
+     * @param task    task to run
+     */
+    void execute(@NonNull Task task) {
+        task.mSequence = mSequence.getAndIncrement();
+        mExecutor.execute(task);
+    }
+
+    /**
+     * Removes queued tasks of given owner, token and cookie.
+     * Tasks that have already started are not affected.
+     * @param owner     task owner
+     * @param token     task token
+     * @param cookie    task cookie, compared by equality
+     * @return  true if any task has been removed, false otherwise
+     */
+    boolean cancel(Object owner, int token, Object cookie) {
+        boolean cancelled = false;
+        for (Runnable runnable : mExecutor.getQueue().toArray(new Runnable[0])) {
+            Task task = (Task) runnable;
+            if (task.mOwner == owner && task.mToken == token &&
+                    (cookie == null ? task.mCookie == null : cookie.equals(task.mCookie))) {
+                cancelled |= mExecutor.remove(task);
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * Prioritized task, identified by its owner, token and cookie for cancellation
+     */
+    abstract static class Task implements Runnable, Comparable<Task> {
+        final Object mOwner;
+        final int mToken;
+        final Object mCookie;
+        final int mPriority;
+        long mSequence;
+
+        /**
+         * Creates a task
+         * @param owner       task owner
+         * @param token       task token
+         * @param cookie      task cookie
+         * @param priority    task priority, lower value runs first
+         */
+        Task(Object owner, int token, Object cookie, int priority) {
+            mOwner = owner;
+            mToken = token;
+            mCookie = cookie;
+            mPriority = priority;
+        }
+
+        @Override
+        public int compareTo(@NonNull Task another) {
+            if (mPriority != another.mPriority) {
+                return mPriority < another.mPriority ? -1 : 1;
+            }
+            return mSequence < another.mSequence ? -1 : (mSequence == another.mSequence ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package io.github.hidroh.calendar.content;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+
+import java.util.Arrays;
+
+/**
+ * {@link android.provider.CalendarContract.Instances} cursor wrapper that only exposes
+ * instances within a given period in local time.
+ * Calendar Provider ranges are inclusive and compare all-day instances in UTC,
+ * so provider results may have instances that end at period start,
+ * or all-day instances of neighbouring days in local time
+ * @see {@link EventCursor#isWithin(long, long)}
+ */
+class RangeCursor extends CursorWrapper {
+    private final int[] mPositions; // positions of wrapped cursor within period
+    private int mPosition = -1;
+
+    /**
+     * Wraps given cursor, reading all of its rows to find those within given period
+     * @param cursor             {@link android.provider.CalendarContract.Instances} cursor
+     * @param startTimeMillis    start time in milliseconds
+     * @param endTimeMillis      end time in milliseconds
+     */
+    RangeCursor(Cursor cursor, long startTimeMillis, long endTimeMillis) {
+        super(cursor);
+        EventCursor eventCursor = new EventCursor(cursor);
+        int[] positions = new int[cursor.getCount()];
+        int count = 0;
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            if (eventCursor.isWithin(startTimeMillis, endTimeMillis)) {
+                positions[count++] = cursor.getPosition();
+            }
+        }
+        mPositions = count == positions.length ? positions : Arrays.copyOf(positions, count);
+        cursor.moveToPosition(-1);
+    }
+
+    @Override
+    public int getCount() {
+        return mPositions.length;
+    }
+
+    @Override
+    public int getPosition() {
+        return mPosition;
+    }
+
+    @Override
+    public boolean moveToPosition(int position) {
+        if (position < 0) {
+            mPosition = -1;
+            super.moveToPosition(-1);
+            return false;
+        }
+        if (position >= mPositions.length) {
+            mPosition = mPositions.length;
+            super.moveToPosition(super.getCount());
+            return false;
+        }
+        mPosition = position;
+        return super.moveToPosition(mPositions[position]);
+    }
+
+    @Override
+    public boolean move(int offset) {
+        return moveToPosition(mPosition + offset);
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        return moveToPosition(0);
+    }
+
+    @Override
+    public boolean moveToLast() {
+        return moveToPosition(mPositions.length - 1);
+    }
+
+    @Override
+    public boolean moveToNext() {
+        return moveToPosition(mPosition + 1);
+    }
+
+    @Override
+    public boolean moveToPrevious() {
+        return moveToPosition(mPosition - 1);
+    }
+
+    @Override
+    public boolean isFirst() {
+        return mPositions.length > 0 && mPosition == 0;
+    }
+
+    @Override
+    public boolean isLast() {
+        return mPositions.length > 0 && mPosition == mPositions.length - 1;
+    }
+
+    @Override
+    public boolean isBeforeFirst() {
+        return mPositions.length == 0 || mPosition == -1;
+    }
+
+    @Override
+    public boolean isAfterLast() {
+        return mPositions.length == 0 || mPosition == mPositions.length;
+    }
+}
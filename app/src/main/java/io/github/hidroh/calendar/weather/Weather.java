@@ -3,13 +3,14 @@ package io.github.hidroh.calendar.weather;
 import android.content.Context;
 import android.graphics.drawable.Drawable;
 import android.support.annotation.ColorInt;
+import android.support.annotation.DrawableRes;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
 import android.support.v4.content.ContextCompat;
 import android.support.v4.graphics.drawable.DrawableCompat;
 import android.text.TextUtils;
-
-import java.util.HashMap;
+import android.util.SparseArray;
 
 import io.github.hidroh.calendar.R;
 
@@ -91,7 +92,6 @@ public class Weather {
      * View model for weather information
      */
     public static class WeatherInfo {
-        private static final HashMap<String, Integer> ICON_MAP = new HashMap<>();
         private static final String ICON_CLEAR_DAY = "clear-day";
         private static final String ICON_CLEAR_NIGHT = "clear-night";
         private static final String ICON_CLOUDY = "cloudy";
@@ -100,17 +100,10 @@ public class Weather {
         private static final String ICON_WIND = "wind";
         private static final String ICON_PARTLY_CLOUDY_DAY = "partly-cloudy-day";
         private static final String ICON_PARTLY_CLOUDY_NIGHT = "partly-cloudy-night";
+        // tinted icon states by tint then drawable resource, shared by all icons drawn with them
+        private static final SparseArray<SparseArray<Drawable.ConstantState>> sIcons =
+                new SparseArray<>();
 
-        static {
-            ICON_MAP.put(ICON_CLEAR_DAY, R.drawable.ic_clear_day_24dp);
-            ICON_MAP.put(ICON_CLEAR_NIGHT, R.drawable.ic_clear_night_24dp);
-            ICON_MAP.put(ICON_CLOUDY, R.drawable.ic_cloudy_24dp);
-            ICON_MAP.put(ICON_PARTLY_CLOUDY_DAY, R.drawable.ic_partly_cloudy_day_24dp);
-            ICON_MAP.put(ICON_PARTLY_CLOUDY_NIGHT, R.drawable.ic_partly_cloudy_night_24dp);
-            ICON_MAP.put(ICON_RAIN, R.drawable.ic_rain_24dp);
-            ICON_MAP.put(ICON_SNOW, R.drawable.ic_snow_24dp);
-            ICON_MAP.put(ICON_WIND, R.drawable.ic_wind_24dp);
-        }
         String icon;
         /**
          * Temperature in Fahrenheit
@@ -118,7 +111,8 @@ public class Weather {
         public Float temperature;
 
         /**
-         * Gets drawable for icon representing this instance weather condition
+         * Gets drawable for icon representing this instance weather condition.
+         * Icons of the same condition and tint share their inflated and tinted state
          * @param context    resources provider
          * @param tint       icon tint color
          * @return  drawable for weather condition, or null if not available
@@ -128,14 +122,54 @@ public class Weather {
             if (TextUtils.isEmpty(icon)) {
                 return null;
             }
-            int drawableResId = R.drawable.ic_cloudy_24dp;
-            if (ICON_MAP.containsKey(icon)) {
-                drawableResId = ICON_MAP.get(icon);
+            int drawableResId = getDrawableResId(icon);
+            SparseArray<Drawable.ConstantState> tintedIcons = sIcons.get(tint);
+            if (tintedIcons == null) {
+                tintedIcons = new SparseArray<>();
+                sIcons.put(tint, tintedIcons);
+            }
+            Drawable.ConstantState state = tintedIcons.get(drawableResId);
+            if (state != null) {
+                return state.newDrawable(context.getResources());
             }
-            Drawable drawable = ContextCompat.getDrawable(context, drawableResId);
-            drawable = DrawableCompat.wrap(drawable);
+            // mutate to not tint drawables of this resource elsewhere
+            Drawable drawable = DrawableCompat.wrap(
+                    ContextCompat.getDrawable(context, drawableResId).mutate());
             DrawableCompat.setTint(drawable, tint);
+            state = drawable.getConstantState();
+            if (state != null) {
+                tintedIcons.put(drawableResId, state);
+            }
             return drawable;
         }
+
+        /**
+         * Gets drawable resource of given weather condition icon
+         * @param icon    weather condition icon name
+         * @return  drawable resource, cloudy icon if condition is unknown
+         */
+        @VisibleForTesting
+        @DrawableRes
+        static int getDrawableResId(@NonNull String icon) {
+            switch (icon) {
+                case ICON_CLEAR_DAY:
+                    return R.drawable.ic_clear_day_24dp;
+                case ICON_CLEAR_NIGHT:
+                    return R.drawable.ic_clear_night_24dp;
+                case ICON_PARTLY_CLOUDY_DAY:
+                    return R.drawable.ic_partly_cloudy_day_24dp;
+                case ICON_PARTLY_CLOUDY_NIGHT:
+                    return R.drawable.ic_partly_cloudy_night_24dp;
+                case ICON_RAIN:
+                    return R.drawable.ic_rain_24dp;
+                case ICON_SNOW:
+                    return R.drawable.ic_snow_24dp;
+                case ICON_WIND:
+                    return R.drawable.ic_wind_24dp;
+                case ICON_CLOUDY:
+                default:
+                    return R.drawable.ic_cloudy_24dp;
+            }
+        }
     }
 }
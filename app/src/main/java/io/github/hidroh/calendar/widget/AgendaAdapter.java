@@ -13,8 +13,11 @@ import android.provider.CalendarContract;
 import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 import android.support.v4.content.ContextCompat;
-import android.support.v4.util.Pair;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
 import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
+import android.text.format.DateFormat;
 import android.text.format.DateUtils;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -22,11 +25,15 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 import io.github.hidroh.calendar.CalendarUtils;
+import io.github.hidroh.calendar.CivilDate;
 import io.github.hidroh.calendar.EditActivity;
 import io.github.hidroh.calendar.R;
+import io.github.hidroh.calendar.StartupTrace;
 import io.github.hidroh.calendar.content.EventCursor;
 import io.github.hidroh.calendar.weather.Weather;
 
@@ -41,12 +48,18 @@ public abstract class AgendaAdapter extends RecyclerView.Adapter<AgendaAdapter.R
     private static final int MONTH_SIZE = 31;
     @VisibleForTesting static final int BLOCK_SIZE = MONTH_SIZE;
     @VisibleForTesting static final int MAX_SIZE = MONTH_SIZE * 3;
-
-    private final EventGroup.EventObserver mEventObserver = new EventGroup.EventObserver() {
+    // formatted titles of days, shared by adapters and kept as days are pruned and re-added
+    private static final FormatCache sDayTitles = new FormatCache(MAX_SIZE * 2);
+    // formatted start and end times, keyed by minute of day and format
+    private static final FormatCache sTimeStrings = new FormatCache(256);
+    private static final long TIME_KEY_24_HOUR = 1;
+    private static final long TIME_KEY_END = 1 << 1;
+
+    private final EventBlock.EventObserver mEventObserver = new EventBlock.EventObserver() {
         @Override
-        public void onChange(long timeMillis) {
+        public void onChange(long startTimeMillis, long endTimeMillis) {
             if (!mLock) {
-                loadEvents(timeMillis);
+                loadEvents(startTimeMillis, endTimeMillis);
             }
         }
     };
@@ -57,6 +70,7 @@ public abstract class AgendaAdapter extends RecyclerView.Adapter<AgendaAdapter.R
     private int mColors[];
     private Weather mWeather;
     private boolean mLock;
+    private boolean mLoadingPaused;
 
     public AgendaAdapter(Context context) {
         mInflater = LayoutInflater.from(context);
@@ -82,27 +96,29 @@ public abstract class AgendaAdapter extends RecyclerView.Adapter<AgendaAdapter.R
                         parent, false));
             case VIEW_TYPE_CONTENT:
             default:
-                return new ContentViewHolder(mInflater.inflate(R.layout.list_item_content,
-                        parent, false));
+                final ContentViewHolder holder = new ContentViewHolder(
+                        mInflater.inflate(R.layout.list_item_content, parent, false));
+                holder.itemView.setOnClickListener(new View.OnClickListener() {
+                    @Override
+                    public void onClick(View v) {
+                        editEvent(v.getContext(), holder.eventItem);
+                    }
+                });
+                return holder;
         }
     }
 
     @Override
     public final void onBindViewHolder(RowViewHolder holder, int position) {
-        final AdapterItem item = getAdapterItem(position);
+        AdapterItem item = getAdapterItem(position);
         bindTitle(item, holder);
         if (item instanceof EventGroup) {
             loadEvents(position);
             bindWeather((EventGroup) item, (GroupViewHolder) holder);
         } else {
+            ((ContentViewHolder) holder).eventItem = (EventItem) item;
             bindTime((EventItem) item, (ContentViewHolder) holder);
             bindColor((EventItem) item, (ContentViewHolder) holder);
-            holder.itemView.setOnClickListener(new View.OnClickListener() {
-                @Override
-                public void onClick(View v) {
-                    editEvent(v.getContext(), (EventItem) item);
-                }
-            });
         }
     }
 
@@ -132,25 +148,150 @@ public abstract class AgendaAdapter extends RecyclerView.Adapter<AgendaAdapter.R
         // override to load events
     }
 
+    /**
+     * Loads events for given range of days, each event should either
+     * start and end within the range,
+     * or starts before and end within of after the range.
+     * Loads each day via {@link #loadEvents(long)} by default,
+     * override to load the whole range with a single query instead,
+     * {@link #bindEvents(long, long, EventCursor)} should be called afterwards with results
+     * @param startTimeMillis    time in millis that represents first day to load
+     * @param endTimeMillis      time in millis that represents day after last day to load
+     * @see {@link #bindEvents(long, long, EventCursor)}
+     */
+    protected void loadEvents(long startTimeMillis, long endTimeMillis) {
+        for (long timeMillis = startTimeMillis; timeMillis < endTimeMillis;
+             timeMillis += DateUtils.DAY_IN_MILLIS) {
+            loadEvents(timeMillis);
+        }
+    }
+
+    /**
+     * Cancels loading events for given range of days, which have been pruned
+     * from this adapter before their events are bound. Default implementation does nothing,
+     * override to cancel loads that fall within the range
+     * @param startTimeMillis    time in millis that represents first pruned day
+     * @param endTimeMillis      time in millis that represents day after last pruned day
+     * @see {@link #loadEvents(long, long)}
+     */
+    protected void cancelEvents(long startTimeMillis, long endTimeMillis) {
+        // override to cancel loading events
+    }
+
     /**
      * Binds events for given day, each event should either
      * start and end within the day,
      * or starts before and end within of after the day.
      * Bound cursor should be deactivated via {@link #deactivate()} when appropriate
      * @param timeMillis    time in millis that represents day in agenda
-     * @param cursor        {@link CalendarContract.Events} cursor wrapper
+     * @param cursor        {@link CalendarContract.Instances} cursor wrapper
+     * @return  true if events have been bound, false if they have been discarded
      * @see {@link #loadEvents(long)}
      * @see {@link #deactivate()}
      */
-    public final void bindEvents(long timeMillis, EventCursor cursor) {
+    public final boolean bindEvents(long timeMillis, EventCursor cursor) {
+        int index = mEventGroups.findGroup(timeMillis);
+        if (index < 0) {
+            return false;
+        }
         if (mLock) {
-            return;
+            mEventGroups.get(index).mLoading = false;
+            mEventGroups.get(index).mDeferred = true; // reload once unlocked
+            return false;
+        }
+        EventBlock block = new EventBlock(cursor, timeMillis,
+                timeMillis + DateUtils.DAY_IN_MILLIS, mEventObserver);
+        bindItems(index, block, mEventGroups.get(index).readItems(cursor));
+        return true;
+    }
+
+    /**
+     * Binds events for given range of days, splitting them into days in agenda,
+     * each event should either start and end within the range,
+     * or starts before and end within of after the range.
+     * Bound cursor is shared by all days in range, and should be deactivated
+     * via {@link #deactivate()} when appropriate
+     * @param startTimeMillis    time in millis that represents first day in range
+     * @param endTimeMillis      time in millis that represents day after last day in range
+     * @param cursor             {@link CalendarContract.Instances} cursor wrapper
+     * @return  true if events have been bound, false if they have been discarded
+     * @see {@link #loadEvents(long, long)}
+     * @see {@link #deactivate()}
+     */
+    public final boolean bindEvents(long startTimeMillis, long endTimeMillis,
+                                    EventCursor cursor) {
+        int first = mEventGroups.ceilingGroup(startTimeMillis),
+                last = mEventGroups.ceilingGroup(endTimeMillis);
+        if (mLock || first == last) {
+            for (int i = first; i < last; i++) {
+                mEventGroups.get(i).mLoading = false;
+                mEventGroups.get(i).mDeferred = true; // reload once unlocked
+            }
+            cursor.close();
+            return false;
+        }
+        EventBlock block = new EventBlock(cursor, startTimeMillis, endTimeMillis,
+                mEventObserver);
+        EventItem[][] items = readItems(cursor, first, last);
+        for (int i = first; i < last; i++) {
+            bindItems(i, block, items[i - first]);
         }
-        Pair<EventGroup, Integer> pair = findGroup(timeMillis);
-        if (pair != null) {
-            pair.first.setCursor(cursor, mEventObserver);
-            notifyEventsChanged(pair.first, pair.second);
+        return true;
+    }
+
+    /**
+     * Reads events from given cursor into items of groups within given range, walking cursor
+     * once and adding each event to every day it falls on, from its start day to its end day
+     * @param cursor    {@link CalendarContract.Instances} cursor wrapper
+     * @param first     index of first group
+     * @param last      index after last group
+     * @return  event items of each group, indexed from first group
+     */
+    private EventItem[][] readItems(EventCursor cursor, int first, int last) {
+        int days = last - first;
+        long[] dayMillis = new long[days + 1]; // start of each day, then end of last day
+        for (int i = 0; i < days; i++) {
+            dayMillis[i] = mEventGroups.get(first + i).mTimeMillis;
+        }
+        dayMillis[days] = dayMillis[days - 1] + DateUtils.DAY_IN_MILLIS;
+        @SuppressWarnings("unchecked")
+        List<EventItem>[] buckets = new List[days];
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            long start = cursor.getDateTimeStart(), end = cursor.getDateTimeEnd();
+            boolean allDay = cursor.getAllDay();
+            // all-day time in Calendar Provider is midnight in UTC, need to convert to local
+            if (allDay) {
+                start = CalendarUtils.toLocalTimeZone(start);
+                end = CalendarUtils.toLocalTimeZone(end);
+            }
+            // day that event starts on, -1 if before first day, days if after last day
+            int startDay = Arrays.binarySearch(dayMillis, start);
+            startDay = startDay >= 0 ? startDay : -startDay - 2;
+            if (startDay >= days) {
+                continue;
+            }
+            // same as query: starts within day, or starts before and ends after day start
+            int endDay = startDay;
+            while (endDay + 1 < days && end > dayMillis[endDay + 1]) {
+                endDay++;
+            }
+            long id = cursor.getId(), calendarId = cursor.getCalendarId();
+            String title = cursor.getTitle();
+            for (int i = Math.max(startDay, 0); i <= endDay; i++) {
+                if (buckets[i] == null) {
+                    buckets[i] = new ArrayList<>();
+                }
+                buckets[i].add(new EventItem(dayMillis[i], id, calendarId, title,
+                        start, end, allDay));
+            }
+        }
+        EventItem[][] items = new EventItem[days][];
+        for (int i = 0; i < days; i++) {
+            items[i] = buckets[i] == null ? EventGroup.NO_ITEMS :
+                    buckets[i].toArray(new EventItem[buckets[i].size()]);
         }
+        return items;
     }
 
     void setCalendarColors(int[] calendarColors) {
@@ -204,25 +345,24 @@ public abstract class AgendaAdapter extends RecyclerView.Adapter<AgendaAdapter.R
     /**
      * Gets adapter position for given day, prepends or appends days
      * to the list if out of range
-     * @param context       resources provider
      * @param timeMillis    time in milliseconds representing given day
      * @return  adapter position or {@link RecyclerView#NO_POSITION} if not a valid day (no time)
      */
-    int getPosition(Context context, long timeMillis) {
+    int getPosition(long timeMillis) {
         if (timeMillis < mEventGroups.get(0).mTimeMillis) {
             while (timeMillis < mEventGroups.get(0).mTimeMillis) {
-                prepend(context);
+                prepend();
             }
         } else if (timeMillis > mEventGroups.get(mEventGroups.size() - 1).mTimeMillis) {
             while (timeMillis > mEventGroups.get(mEventGroups.size() - 1).mTimeMillis) {
-                append(context);
+                append();
             }
         }
-        Pair<EventGroup, Integer> pair = findGroup(timeMillis);
-        if (pair == null) {
+        int index = mEventGroups.findGroup(timeMillis);
+        if (index < 0) {
             return RecyclerView.NO_POSITION;
         }
-        return pair.second;
+        return mEventGroups.getGroupPosition(index);
     }
 
     /**
@@ -238,35 +378,36 @@ public abstract class AgendaAdapter extends RecyclerView.Adapter<AgendaAdapter.R
      * Adds days to beginning of this adapter data set
      * Added days should immediately precede current adapter days.
      * Last days in adapter may be pruned to keep its size constantly small.
-     * @param context    resources provider
-     * @see {@link #append(Context)}
+     * @see {@link #append()}
      */
-    void prepend(Context context) {
+    void prepend() {
+        int span = StartupTrace.begin("prepend");
         long daysMillis = mEventGroups.size() * DateUtils.DAY_IN_MILLIS;
         int count = BLOCK_SIZE, inserted = 0;
         for (int i = 0; i < count; i++) {
             EventGroup last = mEventGroups.get(mEventGroups.size() - 1 - i);
-            EventGroup first = new EventGroup(context, last.mTimeMillis - daysMillis);
+            EventGroup first = new EventGroup(last.mTimeMillis - daysMillis);
             inserted += first.itemCount() + 1;
             mEventGroups.add(0, first);
         }
         notifyItemRangeInserted(0, inserted);
         prune(false);
+        StartupTrace.end(span);
     }
 
     /**
      * Adds days to end of this adapter data set
      * Added days should immediately succeed current adapter days.
      * First days in adapter may be pruned to keep its size constantly small.
-     * @param context    resources provider
-     * @see {@link #prepend(Context)}
+     * @see {@link #prepend()}
      */
-    void append(Context context) {
+    void append() {
+        int span = StartupTrace.begin("append");
         if (mEventGroups.isEmpty()) {
             int count = BLOCK_SIZE;
             long today = CalendarUtils.today();
             for (int i = -count; i < count; i++) {
-                mEventGroups.add(new EventGroup(context, today + DateUtils.DAY_IN_MILLIS * i));
+                mEventGroups.add(new EventGroup(today + DateUtils.DAY_IN_MILLIS * i));
             }
         } else {
             int count = BLOCK_SIZE;
@@ -274,13 +415,14 @@ public abstract class AgendaAdapter extends RecyclerView.Adapter<AgendaAdapter.R
             int inserted = 0;
             for (int i = 0; i < count; i++) {
                 EventGroup first = mEventGroups.get(i);
-                EventGroup last = new EventGroup(context, first.mTimeMillis + daysMillis);
+                EventGroup last = new EventGroup(first.mTimeMillis + daysMillis);
                 inserted += last.itemCount() + 1;
                 mEventGroups.add(last);
             }
             notifyItemRangeInserted(getItemCount() - inserted + 1, inserted);
             prune(true);
         }
+        StartupTrace.end(span);
     }
 
     /**
@@ -295,12 +437,33 @@ public abstract class AgendaAdapter extends RecyclerView.Adapter<AgendaAdapter.R
 
     /**
      * Unlocks view holder binding that may have been previously locked by {@link #lockBinding()},
-     * notifying adapter to rebind view holders as a result
+     * notifying adapter to rebind days that have been skipped while locked
      * @see {@link #loadEvents(long)}
      */
     void unlockBinding() {
         mLock = false;
-        notifyItemRangeChanged(0, getItemCount());
+        rebindDeferred();
+    }
+
+    /**
+     * Temporarily defers loading events for days being bound until {@link #resumeLoading()}
+     * is called, while still binding events that have been loaded.
+     * This can be used in case {@link RecyclerView} is being flung,
+     * when most bound days will have been scrolled past by the time their events are loaded
+     * @see {@link #resumeLoading()}
+     */
+    void pauseLoading() {
+        mLoadingPaused = true;
+    }
+
+    /**
+     * Resumes loading events that may have been previously paused by {@link #pauseLoading()},
+     * notifying adapter to rebind days that have been skipped while paused
+     * @see {@link #loadEvents(long)}
+     */
+    void resumeLoading() {
+        mLoadingPaused = false;
+        rebindDeferred();
     }
 
     /**
@@ -314,7 +477,8 @@ public abstract class AgendaAdapter extends RecyclerView.Adapter<AgendaAdapter.R
 
     private void bindTitle(AdapterItem item, RowViewHolder holder) {
         if (item instanceof EventGroup) {
-            ((GroupViewHolder) holder).textView.setText(item.mTitle);
+            TextView textView = ((GroupViewHolder) holder).textView;
+            textView.setText(getDayTitle(textView.getContext(), item.mTimeMillis));
         } else if (item instanceof NoEventItem) {
             ((ContentViewHolder) holder).textViewTitle.setText(R.string.no_event);
         } else {
@@ -322,6 +486,22 @@ public abstract class AgendaAdapter extends RecyclerView.Adapter<AgendaAdapter.R
         }
     }
 
+    /**
+     * Gets formatted title of given day, formatting it only once
+     * until locale or time zone changes
+     * @param context      resources provider
+     * @param dayMillis    day in milliseconds
+     * @return  formatted day title
+     */
+    private static String getDayTitle(Context context, long dayMillis) {
+        String title = sDayTitles.get(dayMillis);
+        if (title == null) {
+            title = CalendarUtils.toDayString(context, dayMillis);
+            sDayTitles.put(dayMillis, title);
+        }
+        return title;
+    }
+
     private void bindTime(EventItem eventItem, ContentViewHolder contentHolder) {
         if (eventItem instanceof NoEventItem) {
             contentHolder.textViewTime.setVisibility(View.GONE);
@@ -335,18 +515,40 @@ public abstract class AgendaAdapter extends RecyclerView.Adapter<AgendaAdapter.R
                 break;
             case EventItem.DISPLAY_TYPE_START_TIME:
             default:
-                contentHolder.textViewTime.setText(CalendarUtils.toTimeString(
-                        context, eventItem.mStartTimeMillis));
+                contentHolder.textViewTime.setText(
+                        getTimeString(context, eventItem.mStartTimeMillis, false));
                 break;
             case EventItem.DISPLAY_TYPE_END_TIME:
-                String endTimeString = CalendarUtils.toTimeString(
-                        context, eventItem.mEndTimeMillis);
                 contentHolder.textViewTime.setText(
-                        context.getString(R.string.end_time, endTimeString));
+                        getTimeString(context, eventItem.mEndTimeMillis, true));
                 break;
         }
     }
 
+    /**
+     * Gets formatted start or end time string of given time, formatting it only once
+     * per minute of day until locale, time zone or 12/24-hour setting changes
+     * @param context       resources provider
+     * @param timeMillis    time in milliseconds
+     * @param end           true to format as end time, false as start time
+     * @return  formatted time string
+     */
+    @VisibleForTesting
+    static String getTimeString(Context context, long timeMillis, boolean end) {
+        long key = CivilDate.localMinuteOfDay(timeMillis) << 2 |
+                (DateFormat.is24HourFormat(context) ? TIME_KEY_24_HOUR : 0) |
+                (end ? TIME_KEY_END : 0);
+        String timeString = sTimeStrings.get(key);
+        if (timeString == null) {
+            timeString = CalendarUtils.toTimeString(context, timeMillis);
+            if (end) {
+                timeString = context.getString(R.string.end_time, timeString);
+            }
+            sTimeStrings.put(key, timeString);
+        }
+        return timeString;
+    }
+
     private void bindColor(EventItem item, ContentViewHolder holder) {
         if (item instanceof NoEventItem) {
             holder.background.setBackgroundColor(mTransparentColor);
@@ -383,48 +585,81 @@ public abstract class AgendaAdapter extends RecyclerView.Adapter<AgendaAdapter.R
         }
     }
 
-    private Pair<EventGroup, Integer> findGroup(long timeMillis) {
-        int position = 0;
-        // TODO improve searching
-        for (int i = 0; i < mEventGroups.size(); i++) {
-            EventGroup group = mEventGroups.get(i);
-            if (group.mTimeMillis == timeMillis) {
-                return Pair.create(group, position);
-            } else {
-                position += group.itemCount() + 1;
-            }
-        }
-        return null;
+    private void bindItems(int index, EventBlock block, EventItem[] items) {
+        EventItem[] lastItems = mEventGroups.get(index).mItems;
+        mEventGroups.setItems(index, block, items);
+        notifyEventsChanged(lastItems, items, mEventGroups.getGroupPosition(index));
     }
 
-    private void notifyEventsChanged(EventGroup group, int position) {
-        int lastCount = group.mLastCursorCount,
-                newCount = group.mCursor.getCount(),
-                refreshCount = Math.min(newCount, lastCount),
-                diff = newCount - lastCount;
-        // either last or current count is 0
-        // we need to swap no event placeholder
-        // and insert/remove the rest - 1 positions
-        if (refreshCount == 0) {
-            refreshCount = 1;
-            diff = Math.max(--diff, 0);
+    /**
+     * Notifies only rows of events that have been inserted, removed, moved or modified
+     * between last and new items of a group
+     * @param lastItems    previously bound event items
+     * @param items        newly bound event items
+     * @param position     adapter position of group
+     */
+    private void notifyEventsChanged(EventItem[] lastItems, EventItem[] items,
+                                     final int position) {
+        DiffUtil.calculateDiff(new EventItemDiff(lastItems, items))
+                .dispatchUpdatesTo(new ListUpdateCallback() {
+                    @Override
+                    public void onInserted(int itemPosition, int count) {
+                        notifyItemRangeInserted(position + 1 + itemPosition, count);
+                    }
+
+                    @Override
+                    public void onRemoved(int itemPosition, int count) {
+                        notifyItemRangeRemoved(position + 1 + itemPosition, count);
+                    }
+
+                    @Override
+                    public void onMoved(int fromPosition, int toPosition) {
+                        notifyItemMoved(position + 1 + fromPosition, position + 1 + toPosition);
+                    }
+
+                    @Override
+                    public void onChanged(int itemPosition, int count, Object payload) {
+                        notifyItemRangeChanged(position + 1 + itemPosition, count, payload);
+                    }
+                });
+    }
+
+    private void loadEvents(int position) {
+        EventGroup group = (EventGroup) getAdapterItem(position);
+        if (group.mBlock != null || group.mLoading) {
+            return;
+        }
+        if (mLock || mLoadingPaused) {
+            group.mDeferred = true; // load once unlocked or resumed
+            return;
         }
-        notifyItemRangeChanged(position + 1, refreshCount);
-        if (diff > 0) {
-            notifyItemRangeInserted(position + 1 + refreshCount, diff);
-        } else if (diff < 0) {
-            notifyItemRangeRemoved(position + 1 + refreshCount, -diff);
+        // load the whole block of days that this group was added with
+        int first = mEventGroups.findGroup(group.mTimeMillis);
+        first -= first % BLOCK_SIZE;
+        int last = Math.min(first + BLOCK_SIZE, mEventGroups.size());
+        for (int i = first; i < last; i++) {
+            mEventGroups.get(i).mLoading = true;
         }
-        group.mLastCursorCount = newCount;
+        loadEvents(mEventGroups.get(first).mTimeMillis,
+                mEventGroups.get(last - 1).mTimeMillis + DateUtils.DAY_IN_MILLIS);
     }
 
-    private void loadEvents(int position) {
-        if (mLock) {
+    /**
+     * Rebinds headers of days whose events loading has been skipped,
+     * unless binding is still locked or loading is still paused
+     */
+    private void rebindDeferred() {
+        if (mLock || mLoadingPaused) {
             return;
         }
-        EventGroup group = (EventGroup) getAdapterItem(position);
-        if (group.mCursor == null) {
-            loadEvents(group.mTimeMillis);
+        int position = 0;
+        for (int i = 0; i < mEventGroups.size(); i++) {
+            EventGroup group = mEventGroups.get(i);
+            if (group.mDeferred) {
+                group.mDeferred = false;
+                notifyItemChanged(position);
+            }
+            position += group.itemCount() + 1;
         }
     }
 
@@ -447,11 +682,21 @@ public abstract class AgendaAdapter extends RecyclerView.Adapter<AgendaAdapter.R
             return;
         }
         int removed = 0, index = start ? 0 : MAX_SIZE;
+        long firstLoading = Long.MAX_VALUE, lastLoading = Long.MIN_VALUE;
         while (mEventGroups.size() > MAX_SIZE) {
-            removed += mEventGroups.get(index).itemCount() + 1;
+            EventGroup group = mEventGroups.get(index);
+            if (group.mLoading) {
+                firstLoading = Math.min(firstLoading, group.mTimeMillis);
+                lastLoading = Math.max(lastLoading, group.mTimeMillis);
+            }
+            removed += group.itemCount() + 1;
             mEventGroups.remove(index);
         }
         notifyItemRangeRemoved(start ? 0 : getItemCount(), removed);
+        if (firstLoading <= lastLoading) {
+            // pruned days will not be bound, no need to wait for their events
+            cancelEvents(firstLoading, lastLoading + DateUtils.DAY_IN_MILLIS);
+        }
     }
 
     static abstract class RowViewHolder extends RecyclerView.ViewHolder {
@@ -483,6 +728,7 @@ public abstract class AgendaAdapter extends RecyclerView.Adapter<AgendaAdapter.R
         final TextView textViewTitle;
         final TextView textViewTime;
         final View background;
+        EventItem eventItem;
 
         public ContentViewHolder(View itemView) {
             super(itemView);
@@ -494,26 +740,39 @@ public abstract class AgendaAdapter extends RecyclerView.Adapter<AgendaAdapter.R
 
     /**
      * A custom {@link ArrayList} for {@link EventGroup} that allows
-     * operations to manage each group's {@link EventItem}
+     * operations to manage each group's {@link EventItem}.
+     * Maintains a Fenwick tree of group sizes (group and its items) to resolve
+     * adapter positions in logarithmic time
      */
     static class EventGroupList extends ArrayList<EventGroup> {
 
         int mChildrenSize = 0;
+        // 1-based Fenwick tree over group sizes, rebuilt lazily if invalid
+        private int[] mTree;
+        private boolean mTreeInvalid = false;
 
         EventGroupList(int capacity) {
             super(capacity);
+            mTree = new int[capacity + 1];
         }
 
         @Override
         public void add(int index, EventGroup group) {
+            if (index == size()) {
+                add(group);
+                return;
+            }
             mChildrenSize += group.itemCount();
             super.add(index, group);
+            mTreeInvalid = true; // shifts all subsequent groups
         }
 
         @Override
         public boolean add(EventGroup group) {
             mChildrenSize += group.itemCount();
-            return super.add(group);
+            super.add(group);
+            appendTree(group.itemCount() + 1);
+            return true;
         }
 
         @Override
@@ -532,6 +791,9 @@ public abstract class AgendaAdapter extends RecyclerView.Adapter<AgendaAdapter.R
             EventGroup group = super.remove(index);
             mChildrenSize -= group.itemCount();
             group.deactivate();
+            if (index < size()) { // removing last group does not affect the rest of tree
+                mTreeInvalid = true;
+            }
             return group;
         }
 
@@ -542,26 +804,86 @@ public abstract class AgendaAdapter extends RecyclerView.Adapter<AgendaAdapter.R
             }
             super.clear();
             mChildrenSize = 0;
+            mTreeInvalid = false;
         }
 
         int groupAndChildrenSize() {
             return size() + mChildrenSize;
         }
 
-        AdapterItem getGroupOrItem(int index) {
-            int count = 0;
-            for (int i = 0; i < size(); i++) {
-                if (index < count + 1 + get(i).itemCount()) {
-                    if (index == count) {
-                        return get(i);
-                    } else {
-                        return get(i).getItem(index - count - 1);
-                    }
+        AdapterItem getGroupOrItem(int position) {
+            if (position < 0 || position >= groupAndChildrenSize()) {
+                return null;
+            }
+            validateTree();
+            // find last group whose position is at or before given position
+            int index = 0, remaining = position;
+            for (int bit = Integer.highestOneBit(size()); bit > 0; bit >>= 1) {
+                int next = index + bit;
+                if (next <= size() && mTree[next] <= remaining) {
+                    index = next;
+                    remaining -= mTree[next];
+                }
+            }
+            EventGroup group = get(index);
+            return remaining == 0 ? group : group.getItem(remaining - 1);
+        }
+
+        /**
+         * Finds group for given day, groups are sorted by day
+         * @param timeMillis    time in milliseconds representing given day
+         * @return  index of group, or -1 if none found
+         */
+        int findGroup(long timeMillis) {
+            int index = ceilingGroup(timeMillis);
+            return index < size() && get(index).mTimeMillis == timeMillis ? index : -1;
+        }
+
+        /**
+         * Finds first group at or after given time, groups are sorted by day
+         * @param timeMillis    time in milliseconds
+         * @return  index of group, or list size if none found
+         */
+        int ceilingGroup(long timeMillis) {
+            int low = 0, high = size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (get(mid).mTimeMillis < timeMillis) {
+                    low = mid + 1;
                 } else {
-                    count += 1 + get(i).itemCount();
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Gets adapter position of group at given index
+         * @param index    group index
+         * @return  adapter position
+         */
+        int getGroupPosition(int index) {
+            validateTree();
+            return prefixSum(index);
+        }
+
+        /**
+         * Sets items for group at given index, updating position index accordingly
+         * @param index    group index
+         * @param block    query result that items are read from
+         * @param items    event items
+         */
+        void setItems(int index, @Nullable EventBlock block, EventItem[] items) {
+            EventGroup group = get(index);
+            int lastCount = group.itemCount();
+            group.setItems(block, items);
+            int diff = group.itemCount() - lastCount;
+            mChildrenSize += diff;
+            if (!mTreeInvalid) {
+                for (int i = index + 1; i <= size(); i += i & -i) {
+                    mTree[i] += diff;
                 }
             }
-            return null;
         }
 
         void invalidate() {
@@ -570,6 +892,49 @@ public abstract class AgendaAdapter extends RecyclerView.Adapter<AgendaAdapter.R
                 group.deactivate();
                 mChildrenSize += group.itemCount();
             }
+            mTreeInvalid = true;
+        }
+
+        private void appendTree(int groupSize) {
+            if (mTreeInvalid) {
+                return; // will be rebuilt
+            }
+            int n = size();
+            ensureTreeCapacity();
+            // node n covers groups (n - lowest bit of n, n]
+            mTree[n] = groupSize + prefixSum(n - 1) - prefixSum(n - (n & -n));
+        }
+
+        private void validateTree() {
+            if (!mTreeInvalid) {
+                return;
+            }
+            int n = size();
+            ensureTreeCapacity();
+            for (int i = 1; i <= n; i++) {
+                mTree[i] = get(i - 1).itemCount() + 1;
+            }
+            for (int i = 1; i <= n; i++) {
+                int parent = i + (i & -i);
+                if (parent <= n) {
+                    mTree[parent] += mTree[i];
+                }
+            }
+            mTreeInvalid = false;
+        }
+
+        private void ensureTreeCapacity() {
+            if (mTree.length <= size()) {
+                mTree = Arrays.copyOf(mTree, Math.max(size() + 1, mTree.length * 2));
+            }
+        }
+
+        private int prefixSum(int count) {
+            int sum = 0;
+            for (int i = count; i > 0; i -= i & -i) {
+                sum += mTree[i];
+            }
+            return sum;
         }
     }
 
@@ -612,27 +977,15 @@ public abstract class AgendaAdapter extends RecyclerView.Adapter<AgendaAdapter.R
             }
         };
 
-        interface EventObserver {
-            void onChange(long timeMillis);
-        }
-
-        private final ContentObserver mContentObserver = new ContentObserver(new Handler()) {
-            @Override
-            public boolean deliverSelfNotifications() {
-                return true;
-            }
+        private static final EventItem[] NO_ITEMS = new EventItem[0];
+        private EventItem[] mItems = NO_ITEMS;
+        private NoEventItem mNoEventItem;
+        EventBlock mBlock;
+        boolean mLoading;
+        boolean mDeferred; // events loading skipped while binding locked or loading paused
 
-            @Override
-            public void onChange(boolean selfChange) {
-                mEventObserver.onChange(mTimeMillis);
-            }
-        };
-        private EventGroup.EventObserver mEventObserver;
-        int mLastCursorCount = 0;
-        EventCursor mCursor;
-
-        EventGroup(Context context, long timeMillis) {
-            super(CalendarUtils.toDayString(context, timeMillis), timeMillis);
+        EventGroup(long timeMillis) {
+            super(null, timeMillis); // title is formatted when bound
         }
 
         private EventGroup(Parcel source) {
@@ -640,39 +993,152 @@ public abstract class AgendaAdapter extends RecyclerView.Adapter<AgendaAdapter.R
         }
 
         int itemCount() {
-            if (mCursor == null || mCursor.getCount() == 0) {
+            if (mItems.length == 0) {
                 return 1; // has a no event item by default
             }
-            return mCursor.getCount();
+            return mItems.length;
+        }
+
+        int eventCount() {
+            return mItems.length;
         }
 
         EventItem getItem(int index) {
-            if (mCursor == null || mCursor.getCount() == 0) {
-                return new NoEventItem(null, mTimeMillis);
+            if (mItems.length == 0) {
+                if (mNoEventItem == null) {
+                    mNoEventItem = new NoEventItem(null, mTimeMillis);
+                }
+                return mNoEventItem;
             }
-            mCursor.moveToPosition(index);
-            // TODO use an object pool
-            return new EventItem(mTimeMillis, mCursor);
+            return mItems[index];
         }
 
-        void setCursor(EventCursor cursor, EventObserver eventObserver) {
-            deactivate(); // deactivate previously set cursor if any
-            cursor.registerContentObserver(mContentObserver);
-            mCursor = cursor;
-            mEventObserver = eventObserver;
+        /**
+         * Reads events from given cursor into items, so that binding rows
+         * does not need to move cursor or allocate
+         * @param cursor    {@link CalendarContract.Instances} cursor wrapper,
+         *                  which only has events of this day
+         * @return  event items
+         */
+        EventItem[] readItems(EventCursor cursor) {
+            List<EventItem> items = new ArrayList<>();
+            cursor.moveToPosition(-1);
+            while (cursor.moveToNext()) {
+                items.add(new EventItem(mTimeMillis, cursor));
+            }
+            return items.isEmpty() ? NO_ITEMS : items.toArray(new EventItem[items.size()]);
+        }
+
+        void setItems(@Nullable EventBlock block, EventItem[] items) {
+            deactivate(); // deactivate previously set items if any
+            if (block != null) {
+                block.acquire();
+            }
+            mBlock = block;
+            mItems = items;
         }
 
         void deactivate() {
-            mLastCursorCount = 0;
-            if (mCursor != null) {
+            mItems = NO_ITEMS;
+            mLoading = false;
+            if (mBlock != null) {
+                mBlock.release();
+                mBlock = null;
+            }
+        }
+    }
+
+    /**
+     * Query result for a range of days, shared by groups of those days.
+     * Its cursor is observed once for the whole range,
+     * and closed once all groups it has been bound to are deactivated
+     */
+    static class EventBlock {
+        interface EventObserver {
+            void onChange(long startTimeMillis, long endTimeMillis);
+        }
+
+        private final EventCursor mCursor;
+        private final ContentObserver mContentObserver;
+        private int mGroupCount = 0;
+
+        EventBlock(EventCursor cursor, final long startTimeMillis, final long endTimeMillis,
+                   final EventObserver eventObserver) {
+            mCursor = cursor;
+            mContentObserver = new ContentObserver(new Handler()) {
+                @Override
+                public boolean deliverSelfNotifications() {
+                    return true;
+                }
+
+                @Override
+                public void onChange(boolean selfChange) {
+                    eventObserver.onChange(startTimeMillis, endTimeMillis);
+                }
+            };
+            cursor.registerContentObserver(mContentObserver);
+        }
+
+        void acquire() {
+            mGroupCount++;
+        }
+
+        void release() {
+            if (--mGroupCount == 0) {
                 mCursor.unregisterContentObserver(mContentObserver);
                 mCursor.close();
-                mCursor = null;
-                mEventObserver = null;
             }
         }
     }
 
+    /**
+     * Diff between last and new items of a group, keyed by event ID,
+     * where no items are represented by a single no event placeholder
+     */
+    static class EventItemDiff extends DiffUtil.Callback {
+        private final EventItem[] mLastItems;
+        private final EventItem[] mItems;
+
+        EventItemDiff(EventItem[] lastItems, EventItem[] items) {
+            mLastItems = lastItems;
+            mItems = items;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return Math.max(mLastItems.length, 1);
+        }
+
+        @Override
+        public int getNewListSize() {
+            return Math.max(mItems.length, 1);
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            if (mLastItems.length == 0 || mItems.length == 0) {
+                return mLastItems.length == mItems.length; // both are placeholders
+            }
+            // instances of recurring event share event ID, tell them apart by start time
+            EventItem lastItem = mLastItems[oldItemPosition], item = mItems[newItemPosition];
+            return lastItem.mId == item.mId &&
+                    lastItem.mStartTimeMillis == item.mStartTimeMillis;
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            if (mLastItems.length == 0) {
+                return true; // both are placeholders
+            }
+            EventItem lastItem = mLastItems[oldItemPosition], item = mItems[newItemPosition];
+            return lastItem.mCalendarId == item.mCalendarId &&
+                    lastItem.mStartTimeMillis == item.mStartTimeMillis &&
+                    lastItem.mEndTimeMillis == item.mEndTimeMillis &&
+                    lastItem.mIsAllDay == item.mIsAllDay &&
+                    TextUtils.equals(lastItem.mTitle, item.mTitle);
+        }
+    }
+
     static class EventItem extends AdapterItem {
 
         static final int DISPLAY_TYPE_START_TIME = 0;
@@ -713,6 +1179,27 @@ public abstract class AgendaAdapter extends RecyclerView.Adapter<AgendaAdapter.R
             setDisplayType();
         }
 
+        /**
+         * Creates item of given event for given day
+         * @param timeMillis         time in millis that represents day in agenda
+         * @param id                 event ID
+         * @param calendarId         calendar ID
+         * @param title              event title
+         * @param startTimeMillis    start time in milliseconds, in local time zone
+         * @param endTimeMillis      end time in milliseconds, in local time zone
+         * @param allDay             true if all-day event, false otherwise
+         */
+        EventItem(long timeMillis, long id, long calendarId, String title,
+                  long startTimeMillis, long endTimeMillis, boolean allDay) {
+            super(title, timeMillis);
+            mId = id;
+            mCalendarId = calendarId;
+            mStartTimeMillis = startTimeMillis;
+            mEndTimeMillis = endTimeMillis;
+            mIsAllDay = allDay;
+            setDisplayType();
+        }
+
         EventItem(String title, long timeMillis) {
             super(title, timeMillis);
         }
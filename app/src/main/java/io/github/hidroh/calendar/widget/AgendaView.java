@@ -14,6 +14,7 @@ import android.support.v7.widget.LinearSmoothScroller;
 import android.support.v7.widget.RecyclerView;
 import android.util.AttributeSet;
 import android.view.View;
+import android.view.ViewConfiguration;
 
 import io.github.hidroh.calendar.CalendarUtils;
 import io.github.hidroh.calendar.R;
@@ -31,6 +32,9 @@ public class AgendaView extends RecyclerView {
     private long mPrevTimeMillis = CalendarUtils.NO_TIME_MILLIS;
     private Bundle mAdapterSavedState;
     private final int[] mColors;
+    // fling velocity from which loading events is deferred until scroll settles
+    private final int mDeferLoadingVelocity;
+    private boolean mLoadingPaused;
 
     /**
      * Callback interface for active (top) date change event
@@ -53,6 +57,8 @@ public class AgendaView extends RecyclerView {
 
     public AgendaView(Context context, @Nullable AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
+        mDeferLoadingVelocity = ViewConfiguration.get(context)
+                .getScaledMaximumFlingVelocity() / 4;
         init();
         if (isInEditMode()) {
             mColors = new int[]{ContextCompat.getColor(context, android.R.color.transparent)};
@@ -94,6 +100,24 @@ public class AgendaView extends RecyclerView {
             mPendingScrollPosition = NO_POSITION; // clear pending
             mAdapter.unlockBinding();
         }
+        if (state != SCROLL_STATE_SETTLING && mLoadingPaused) {
+            // fling has settled or been caught by user
+            mLoadingPaused = false;
+            if (mAdapter != null) {
+                mAdapter.resumeLoading();
+            }
+        }
+    }
+
+    @Override
+    public boolean fling(int velocityX, int velocityY) {
+        boolean flung = super.fling(velocityX, velocityY);
+        if (flung && mAdapter != null && Math.abs(velocityY) >= mDeferLoadingVelocity) {
+            // most days bound during fast fling will be scrolled past before their events load
+            mLoadingPaused = true;
+            mAdapter.pauseLoading();
+        }
+        return flung;
     }
 
     @Override
@@ -107,7 +131,7 @@ public class AgendaView extends RecyclerView {
                 mAdapter.restoreState(mAdapterSavedState);
                 mAdapterSavedState = null;
             } else {
-                mAdapter.append(getContext());
+                mAdapter.append();
                 getLinearLayoutManager().scrollToPosition(mAdapter.getItemCount() / 2);
             }
             mAdapter.setCalendarColors(mColors);
@@ -131,7 +155,7 @@ public class AgendaView extends RecyclerView {
         if (mAdapter == null) {
             return;
         }
-        mPendingScrollPosition = mAdapter.getPosition(getContext(), dayMillis);
+        mPendingScrollPosition = mAdapter.getPosition(dayMillis);
         if (mPendingScrollPosition >= 0) {
             // lock binding to prevent loading events that might offset scroll position
             mAdapter.lockBinding();
@@ -162,7 +186,7 @@ public class AgendaView extends RecyclerView {
             mAdapter.lockBinding();
             mAdapter.deactivate();
             mAdapter.notifyItemRangeRemoved(0, originalCount);
-            mAdapter.append(getContext());
+            mAdapter.append();
             mAdapter.notifyItemRangeInserted(0, mAdapter.getItemCount());
             setSelectedDay(CalendarUtils.today());
         }
@@ -195,12 +219,12 @@ public class AgendaView extends RecyclerView {
         if (getLinearLayoutManager().findFirstVisibleItemPosition() == 0) {
             // once prepended first visible position will no longer be 0
             // which will negate the guard check
-            mAdapter.prepend(getContext());
+            mAdapter.prepend();
         } else if (getLinearLayoutManager().findLastVisibleItemPosition()
                 == mAdapter.getItemCount() - 1) {
             // once appended last visible position will no longer be last adapter position
             // which will negate the guard check
-            mAdapter.append(getContext());
+            mAdapter.append();
         }
     }
 
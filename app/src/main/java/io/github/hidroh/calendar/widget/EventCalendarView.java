@@ -1,6 +1,7 @@
 package io.github.hidroh.calendar.widget;
 
 import android.content.Context;
+import android.content.res.TypedArray;
 import android.database.ContentObserver;
 import android.os.Handler;
 import android.support.annotation.NonNull;
@@ -9,6 +10,7 @@ import android.util.AttributeSet;
 import android.view.View;
 
 import io.github.hidroh.calendar.CalendarUtils;
+import io.github.hidroh.calendar.R;
 import io.github.hidroh.calendar.content.EventCursor;
 
 /**
@@ -16,9 +18,11 @@ import io.github.hidroh.calendar.content.EventCursor;
  * that supports month change event and state restoration.
  *
  * The {@link ViewPager} recycles adapter item views as users scroll
- * to first or last item.
+ * to first or last item. Month pages are {@link MonthView}s by default,
+ * or canvas-drawn {@link MonthGridView}s if {@code app:drawnMonthGrid} is set.
  */
 public class EventCalendarView extends ViewPager {
+    private static final int PREFETCH_MONTHS = 2;
 
     private final MonthView.OnDateChangeListener mDateChangeListener =
             new MonthView.OnDateChangeListener() {
@@ -29,9 +33,11 @@ public class EventCalendarView extends ViewPager {
                     notifyDayChange(dayMillis);
                 }
             };
+    private final boolean mDrawnMonthGrid;
     private MonthViewPagerAdapter mPagerAdapter;
     private OnChangeListener mListener;
     private CalendarAdapter mCalendarAdapter;
+    private long mActiveMonthMillis;
 
     /**
      * Callback interface for calendar view change events
@@ -63,13 +69,34 @@ public class EventCalendarView extends ViewPager {
             // override to load events
         }
 
+        /**
+         * Loads events for given month ahead of it being swiped to, without binding them.
+         * Default implementation does nothing
+         * @param monthMillis    month in milliseconds
+         */
+        protected void prefetchEvents(long monthMillis) {
+            // override to prefetch events
+        }
+
+        /**
+         * Cancels loading events for given month, which has been shifted out of calendar view
+         * before its events are bound. Default implementation does nothing
+         * @param monthMillis    month in milliseconds
+         * @see {@link #loadEvents(long)}
+         */
+        protected void cancelEvents(long monthMillis) {
+            // override to cancel loading events
+        }
+
         /**
          * Binds events for given month that have been loaded via {@link #loadEvents(long)}
          * @param monthMillis    month in milliseconds
-         * @param cursor         {@link android.provider.CalendarContract.Events} cursor wrapper
+         * @param cursor         {@link android.provider.CalendarContract.Instances} cursor wrapper
+         * @return  true if events have been bound, false if month is no longer in calendar view,
+         *          in which case cursor is closed
          */
-        public final void bindEvents(long monthMillis, EventCursor cursor) {
-            mCalendarView.swapCursor(monthMillis, cursor);
+        public final boolean bindEvents(long monthMillis, EventCursor cursor) {
+            return mCalendarView.swapCursor(monthMillis, cursor);
         }
     }
 
@@ -79,6 +106,9 @@ public class EventCalendarView extends ViewPager {
 
     public EventCalendarView(Context context, AttributeSet attrs) {
         super(context, attrs);
+        TypedArray ta = context.obtainStyledAttributes(attrs, R.styleable.EventCalendarView);
+        mDrawnMonthGrid = ta.getBoolean(R.styleable.EventCalendarView_drawnMonthGrid, false);
+        ta.recycle();
         init();
     }
 
@@ -86,7 +116,7 @@ public class EventCalendarView extends ViewPager {
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
         // make this ViewPager's height WRAP_CONTENT
-        View child = mPagerAdapter.mViews.get(getCurrentItem());
+        View child = (View) mPagerAdapter.mViews.get(getCurrentItem());
         if (child != null) {
             child.measure(widthMeasureSpec, heightMeasureSpec);
             int height = child.getMeasuredHeight();
@@ -163,9 +193,10 @@ public class EventCalendarView extends ViewPager {
     }
 
     private void init() {
-        mPagerAdapter = new MonthViewPagerAdapter(mDateChangeListener);
+        mPagerAdapter = new MonthViewPagerAdapter(mDateChangeListener, mDrawnMonthGrid);
         setAdapter(mPagerAdapter);
         setCurrentItem(mPagerAdapter.getCount() / 2);
+        mActiveMonthMillis = mPagerAdapter.getMonth(getCurrentItem());
         addOnPageChangeListener(new SimpleOnPageChangeListener() {
             public boolean mDragging = false; // indicate if page change is from user
 
@@ -189,6 +220,7 @@ public class EventCalendarView extends ViewPager {
                 if (state == ViewPager.SCROLL_STATE_IDLE) {
                     syncPages(getCurrentItem());
                     loadEvents(getCurrentItem());
+                    prefetchEvents(getCurrentItem());
                 } else if (state == SCROLL_STATE_DRAGGING) {
                     mDragging = true;
                 }
@@ -215,9 +247,11 @@ public class EventCalendarView extends ViewPager {
     private void syncPages(int position) {
         int first = 0, last = mPagerAdapter.getCount() - 1;
         if (position == last) {
+            cancelEvents(first, last - 2);
             mPagerAdapter.shiftLeft();
             setCurrentItem(first + 1, false);
         } else if (position == 0) {
+            cancelEvents(first + 2, last);
             mPagerAdapter.shiftRight();
             setCurrentItem(last - 1, false);
         } else {
@@ -237,8 +271,41 @@ public class EventCalendarView extends ViewPager {
         }
     }
 
-    private void swapCursor(long monthMillis, EventCursor cursor) {
-        mPagerAdapter.swapCursor(monthMillis, cursor, new PagerContentObserver(monthMillis));
+    /**
+     * Cancels loading events for months in given positions, which are about to be shifted out
+     * @param first    first position, inclusive
+     * @param last     last position, inclusive
+     */
+    private void cancelEvents(int first, int last) {
+        if (mCalendarAdapter == null) {
+            return;
+        }
+        for (int position = first; position <= last; position++) {
+            if (mPagerAdapter.getCursor(position) == null) { // events may still be loading
+                mCalendarAdapter.cancelEvents(mPagerAdapter.getMonth(position));
+            }
+        }
+    }
+
+    /**
+     * Prefetches events for next months in swiping direction
+     * @param position    current item position
+     */
+    private void prefetchEvents(int position) {
+        long monthMillis = mPagerAdapter.getMonth(position);
+        if (mCalendarAdapter == null || CalendarUtils.sameMonth(monthMillis, mActiveMonthMillis)) {
+            return;
+        }
+        int direction = CalendarUtils.monthBefore(monthMillis, mActiveMonthMillis) ? -1 : 1;
+        mActiveMonthMillis = monthMillis;
+        for (int i = 1; i <= PREFETCH_MONTHS; i++) {
+            mCalendarAdapter.prefetchEvents(CalendarUtils.addMonths(monthMillis, direction * i));
+        }
+    }
+
+    private boolean swapCursor(long monthMillis, EventCursor cursor) {
+        return mPagerAdapter.swapCursor(monthMillis, cursor,
+                new PagerContentObserver(monthMillis));
     }
 
     class PagerContentObserver extends ContentObserver {
@@ -0,0 +1,49 @@
+package io.github.hidroh.calendar.widget;
+
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+
+import io.github.hidroh.calendar.CivilDate;
+
+/**
+ * Bounded cache of formatted date time strings, keyed by their time values.
+ * Strings are dropped once default locale or time zone changes, as they are formatted with those,
+ * as signalled by {@link CivilDate#generation()}.
+ * Should only be accessed from main thread
+ */
+class FormatCache {
+    private final LruCache<Long, String> mCache;
+    private int mGeneration = CivilDate.generation();
+
+    /**
+     * Creates a cache
+     * @param maxSize    maximum number of strings to keep
+     */
+    FormatCache(int maxSize) {
+        mCache = new LruCache<>(maxSize);
+    }
+
+    /**
+     * Gets string formatted for given key, if still valid
+     * @param key    formatted value
+     * @return  formatted string, or null if not cached
+     */
+    @Nullable
+    String get(long key) {
+        int generation = CivilDate.generation();
+        if (generation != mGeneration) {
+            mCache.evictAll();
+            mGeneration = generation;
+        }
+        return mCache.get(key);
+    }
+
+    /**
+     * Caches string formatted for given key
+     * @param key       formatted value
+     * @param string    formatted string
+     */
+    void put(long key, String string) {
+        mCache.put(key, string);
+    }
+}
@@ -0,0 +1,402 @@
+package io.github.hidroh.calendar.widget;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.StyleRes;
+import android.support.annotation.VisibleForTesting;
+import android.support.v4.graphics.drawable.DrawableCompat;
+import android.support.v4.view.ViewCompat;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+import android.support.v4.widget.ExploreByTouchHelper;
+import android.text.TextPaint;
+import android.text.style.ReplacementSpan;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
+
+import java.text.DateFormatSymbols;
+import java.util.List;
+
+import io.github.hidroh.calendar.CalendarUtils;
+import io.github.hidroh.calendar.CivilDate;
+import io.github.hidroh.calendar.R;
+import io.github.hidroh.calendar.content.EventCursor;
+import io.github.hidroh.calendar.text.style.CircleSpan;
+import io.github.hidroh.calendar.text.style.UnderDotSpan;
+
+/**
+ * Custom widget to display a grid of days in a month, drawn directly on canvas as a single view.
+ * Lighter alternative to {@link MonthView}, which lays out a text view per cell.
+ * Days are exposed to accessibility services as virtual views
+ */
+class MonthGridView extends View implements MonthPage {
+    private static final int SPANS_COUNT = 7; // days in week
+    @VisibleForTesting long mMonthMillis;
+    @VisibleForTesting int mEvents = 0; // bit mask of day indices that have events
+    @VisibleForTesting int mSelectedIndex = -1;
+    @VisibleForTesting int mPressedIndex = -1;
+    @VisibleForTesting final DayTouchHelper mTouchHelper = new DayTouchHelper();
+    private final String[] mWeekdays = DateFormatSymbols.getInstance().getShortWeekdays();
+    private final float[] mWeekdayWidths = new float[mWeekdays.length];
+    private final TextPaint mHeaderPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final TextPaint mDayPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final float[] mDayWidths = new float[MonthView.DayLabels.DAYS.length];
+    private final Paint.FontMetrics mFontMetrics = new Paint.FontMetrics();
+    private final Rect mCellBounds = new Rect();
+    private final int mCellHeight;
+    private final int mDayTextColor;
+    private final CircleSpan mCircleSpan;
+    private final UnderDotSpan mUnderDotSpan;
+    @Nullable private final Drawable mPressedDrawable; // drawn over pressed cell
+    private int mStartOffset; // blank cells before first day
+    private int mDays;
+    private EventCursor mCursor;
+    private MonthView.OnDateChangeListener mListener;
+
+    public MonthGridView(Context context) {
+        this(context, null);
+    }
+
+    public MonthGridView(Context context, @Nullable AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public MonthGridView(Context context, @Nullable AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        TypedArray ta = context.getTheme().obtainStyledAttributes(new int[]{
+                R.attr.listPreferredItemHeightSmall,
+                R.attr.selectableItemBackgroundBorderless
+        });
+        mCellHeight = ta.getDimensionPixelSize(0, 0);
+        mPressedDrawable = ta.getDrawable(1);
+        ta.recycle();
+        if (mPressedDrawable != null) {
+            mPressedDrawable.setCallback(this);
+        }
+        applyTextAppearance(mHeaderPaint, R.style.TextAppearance_AppCompat_Caption);
+        applyTextAppearance(mDayPaint, R.style.TextAppearance_AppCompat_Body1);
+        mDayTextColor = mDayPaint.getColor();
+        for (int i = 0; i < mDayWidths.length; i++) {
+            mDayWidths[i] = mDayPaint.measureText(MonthView.DayLabels.DAYS[i]);
+        }
+        for (int i = 0; i < mWeekdays.length; i++) { // indexed by Calendar weekday, first is empty
+            mWeekdayWidths[i] = mHeaderPaint.measureText(mWeekdays[i]);
+        }
+        ViewCompat.setAccessibilityDelegate(this, mTouchHelper);
+        mCircleSpan = new CircleSpan(context);
+        mUnderDotSpan = new UnderDotSpan(context);
+        setCalendar(CalendarUtils.today());
+    }
+
+    @Override
+    public void setOnDateChangeListener(MonthView.OnDateChangeListener listener) {
+        mListener = listener;
+    }
+
+    @Override
+    public void setCalendar(long monthMillis) {
+        if (CalendarUtils.isNotTime(monthMillis)) {
+            throw new IllegalArgumentException("Invalid timestamp value");
+        }
+        if (CalendarUtils.sameMonth(mMonthMillis, monthMillis)) {
+            return;
+        }
+        int rows = getRowCount();
+        mMonthMillis = CalendarUtils.monthFirstDay(monthMillis);
+        mStartOffset = CalendarUtils.monthFirstDayOffset(mMonthMillis);
+        mDays = CalendarUtils.monthSize(mMonthMillis);
+        mEvents = 0;
+        mSelectedIndex = -1;
+        mCursor = null;
+        setPressedIndex(-1, 0, 0);
+        if (rows != getRowCount()) {
+            requestLayout();
+        }
+        invalidate();
+        mTouchHelper.invalidateRoot();
+    }
+
+    @Override
+    public void setSelectedDay(long dayMillis) {
+        if (CalendarUtils.isNotTime(mMonthMillis)) {
+            return;
+        }
+        if (CalendarUtils.isNotTime(dayMillis) ||
+                !CalendarUtils.sameMonth(mMonthMillis, dayMillis)) {
+            setSelectedIndex(-1, false);
+        } else {
+            setSelectedIndex(CalendarUtils.dayOfMonth(dayMillis) - 1, false);
+        }
+    }
+
+    @Override
+    public void swapCursor(@NonNull EventCursor cursor) {
+        if (mCursor == cursor) {
+            return;
+        }
+        mCursor = cursor;
+        int events = MonthView.eventDays(cursor, mMonthMillis, mDays);
+        if (events != mEvents) {
+            mEvents = events;
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        setMeasuredDimension(getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec),
+                resolveSize(getPaddingTop() + getRowCount() * mCellHeight + getPaddingBottom(),
+                        heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        float cellWidth = getCellWidth();
+        int left = getPaddingLeft(), top = getPaddingTop();
+        if (mPressedDrawable != null) {
+            mPressedDrawable.draw(canvas);
+        }
+        mHeaderPaint.getFontMetrics(mFontMetrics);
+        float baseline = top + (mCellHeight - mFontMetrics.ascent - mFontMetrics.descent) / 2;
+        for (int column = 0; column < SPANS_COUNT; column++) {
+            int weekday = MonthView.weekday(column);
+            canvas.drawText(mWeekdays[weekday],
+                    left + cellWidth * column + (cellWidth - mWeekdayWidths[weekday]) / 2,
+                    baseline, mHeaderPaint);
+        }
+        mDayPaint.getFontMetrics(mFontMetrics);
+        for (int dayIndex = 0; dayIndex < mDays; dayIndex++) {
+            int cell = mStartOffset + dayIndex;
+            float centerX = left + cellWidth * (cell % SPANS_COUNT + .5f);
+            int cellTop = top + mCellHeight * (cell / SPANS_COUNT + 1); // below header row
+            baseline = cellTop + (mCellHeight - mFontMetrics.ascent - mFontMetrics.descent) / 2;
+            ReplacementSpan span = dayIndex == mSelectedIndex ? mCircleSpan :
+                    (mEvents & 1 << dayIndex) != 0 ? mUnderDotSpan : null;
+            String day = MonthView.DayLabels.DAYS[dayIndex];
+            if (span == null) {
+                mDayPaint.setColor(mDayTextColor);
+                canvas.drawText(day, centerX - mDayWidths[dayIndex] / 2, baseline, mDayPaint);
+            } else {
+                span.draw(canvas, day, 0, day.length(),
+                        centerX - span.getSize(mDayPaint, day, 0, day.length(), null) / 2f,
+                        (int) (baseline + mFontMetrics.ascent), (int) baseline,
+                        (int) (baseline + mFontMetrics.descent), mDayPaint);
+            }
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        float x = event.getX(), y = event.getY();
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                setPressedIndex(getDayIndex(x, y), x, y);
+                return mPressedIndex >= 0;
+            case MotionEvent.ACTION_MOVE:
+                if (mPressedIndex >= 0 && mPressedIndex != getDayIndex(x, y)) {
+                    setPressedIndex(-1, x, y); // moved out of pressed cell
+                }
+                return true;
+            case MotionEvent.ACTION_UP:
+                if (mPressedIndex >= 0 && mPressedIndex == getDayIndex(x, y)) {
+                    setSelectedIndex(mPressedIndex, true);
+                    performClick();
+                }
+                setPressedIndex(-1, x, y);
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                setPressedIndex(-1, x, y);
+                return true;
+            default:
+                return mPressedIndex >= 0;
+        }
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    @Override
+    protected boolean dispatchHoverEvent(MotionEvent event) {
+        return mTouchHelper.dispatchHoverEvent(event) || super.dispatchHoverEvent(event);
+    }
+
+    @Override
+    protected boolean verifyDrawable(@NonNull Drawable who) {
+        return who == mPressedDrawable || super.verifyDrawable(who);
+    }
+
+    @Override
+    public void jumpDrawablesToCurrentState() {
+        super.jumpDrawablesToCurrentState();
+        if (mPressedDrawable != null) {
+            mPressedDrawable.jumpToCurrentState();
+        }
+    }
+
+    private void applyTextAppearance(TextPaint paint, @StyleRes int textAppearance) {
+        TypedArray ta = getContext().obtainStyledAttributes(textAppearance, new int[]{
+                android.R.attr.textSize,
+                android.R.attr.textColor
+        });
+        paint.setTextSize(ta.getDimension(0, paint.getTextSize()));
+        //noinspection ResourceType
+        paint.setColor(ta.getColor(1, paint.getColor()));
+        ta.recycle();
+    }
+
+    private int getRowCount() {
+        // header row + weeks
+        return 1 + (mStartOffset + mDays + SPANS_COUNT - 1) / SPANS_COUNT;
+    }
+
+    private float getCellWidth() {
+        return (getWidth() - getPaddingLeft() - getPaddingRight()) / (float) SPANS_COUNT;
+    }
+
+    /**
+     * Hit-tests given coordinates against day cells
+     * @param x    x coordinate relative to this view
+     * @param y    y coordinate relative to this view
+     * @return  0-based day of month at given coordinates, or -1 if none
+     */
+    private int getDayIndex(float x, float y) {
+        float cellWidth = getCellWidth();
+        if (cellWidth <= 0 || mCellHeight <= 0) {
+            return -1;
+        }
+        int column = (int) ((x - getPaddingLeft()) / cellWidth),
+                row = (int) ((y - getPaddingTop()) / mCellHeight) - 1; // exclude header row
+        if (x < getPaddingLeft() || column >= SPANS_COUNT || y < getPaddingTop() || row < 0) {
+            return -1;
+        }
+        int dayIndex = row * SPANS_COUNT + column - mStartOffset;
+        return dayIndex >= 0 && dayIndex < mDays ? dayIndex : -1;
+    }
+
+    /**
+     * Gets bounds of cell of given day
+     * @param dayIndex    0-based day of month
+     * @param bounds      rect to receive cell bounds, relative to this view
+     */
+    private void getCellBounds(int dayIndex, Rect bounds) {
+        float cellWidth = getCellWidth();
+        int cell = mStartOffset + dayIndex, column = cell % SPANS_COUNT;
+        int top = getPaddingTop() + mCellHeight * (cell / SPANS_COUNT + 1); // below header row
+        bounds.set((int) (getPaddingLeft() + cellWidth * column), top,
+                (int) (getPaddingLeft() + cellWidth * (column + 1)), top + mCellHeight);
+    }
+
+    /**
+     * Gets start time of given day in local time zone
+     * @param dayIndex    0-based day of month
+     * @return  start of day in milliseconds
+     */
+    private long getDayMillis(int dayIndex) {
+        return CivilDate.startOfDay(CivilDate.localDay(mMonthMillis) + dayIndex);
+    }
+
+    /**
+     * Moves pressed state to cell of given day, with touch hotspot at given coordinates
+     * @param dayIndex    0-based day of month, or -1 to release pressed cell
+     * @param x           x coordinate relative to this view
+     * @param y           y coordinate relative to this view
+     */
+    private void setPressedIndex(int dayIndex, float x, float y) {
+        mPressedIndex = dayIndex;
+        if (mPressedDrawable == null) {
+            return;
+        }
+        if (dayIndex >= 0) {
+            getCellBounds(dayIndex, mCellBounds);
+            mPressedDrawable.setBounds(mCellBounds);
+            DrawableCompat.setHotspot(mPressedDrawable, x, y);
+            mPressedDrawable.setState(PRESSED_ENABLED_STATE_SET);
+        } else {
+            mPressedDrawable.setState(ENABLED_STATE_SET);
+        }
+        invalidate();
+    }
+
+    private void setSelectedIndex(int dayIndex, boolean notifyListener) {
+        if (dayIndex == mSelectedIndex) {
+            return;
+        }
+        int previousIndex = mSelectedIndex;
+        mSelectedIndex = dayIndex;
+        invalidate();
+        if (previousIndex >= 0) {
+            mTouchHelper.invalidateVirtualView(previousIndex);
+        }
+        if (dayIndex >= 0) {
+            mTouchHelper.invalidateVirtualView(dayIndex);
+        }
+        if (notifyListener && mListener != null && dayIndex >= 0) {
+            mListener.onSelectedDayChange(getDayMillis(dayIndex));
+        }
+    }
+
+    /**
+     * Accessibility helper that exposes each day cell as a virtual view,
+     * virtual view IDs being 0-based days of month
+     */
+    @VisibleForTesting
+    class DayTouchHelper extends ExploreByTouchHelper {
+
+        DayTouchHelper() {
+            super(MonthGridView.this);
+        }
+
+        @Override
+        protected int getVirtualViewAt(float x, float y) {
+            int dayIndex = getDayIndex(x, y);
+            return dayIndex >= 0 ? dayIndex : INVALID_ID;
+        }
+
+        @Override
+        protected void getVisibleVirtualViews(List<Integer> virtualViewIds) {
+            for (int dayIndex = 0; dayIndex < mDays; dayIndex++) {
+                virtualViewIds.add(dayIndex);
+            }
+        }
+
+        @Override
+        protected void onPopulateEventForVirtualView(int virtualViewId, AccessibilityEvent event) {
+            event.setContentDescription(getDayDescription(virtualViewId));
+        }
+
+        @Override
+        protected void onPopulateNodeForVirtualView(int virtualViewId,
+                                                    AccessibilityNodeInfoCompat node) {
+            getCellBounds(virtualViewId, mCellBounds);
+            node.setContentDescription(getDayDescription(virtualViewId));
+            node.setBoundsInParent(mCellBounds);
+            node.setSelected(virtualViewId == mSelectedIndex);
+            node.addAction(AccessibilityNodeInfoCompat.ACTION_CLICK);
+        }
+
+        @Override
+        protected boolean onPerformActionForVirtualView(int virtualViewId, int action,
+                                                        Bundle arguments) {
+            if (action != AccessibilityNodeInfoCompat.ACTION_CLICK) {
+                return false;
+            }
+            setSelectedIndex(virtualViewId, true);
+            sendEventForVirtualView(virtualViewId, AccessibilityEvent.TYPE_VIEW_CLICKED);
+            return true;
+        }
+
+        private String getDayDescription(int dayIndex) {
+            return CalendarUtils.toDayString(getContext(), getDayMillis(dayIndex));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package io.github.hidroh.calendar.widget;
+
+import android.provider.CalendarContract;
+import android.support.annotation.NonNull;
+
+import io.github.hidroh.calendar.CalendarUtils;
+import io.github.hidroh.calendar.content.EventCursor;
+
+/**
+ * A page of {@link EventCalendarView} that displays a grid of days in a month
+ * @see MonthView
+ * @see MonthGridView
+ */
+interface MonthPage {
+    /**
+     * Sets listener to be notified when day selection changes
+     * @param listener  listener to be notified
+     */
+    void setOnDateChangeListener(MonthView.OnDateChangeListener listener);
+
+    /**
+     * Sets month to display
+     * @param monthMillis  month to display in milliseconds
+     */
+    void setCalendar(long monthMillis);
+
+    /**
+     * Sets selected day if it falls within this month, unset any previously selected day otherwise
+     * @param dayMillis    selected day in milliseconds, {@link CalendarUtils#NO_TIME_MILLIS} to clear
+     */
+    void setSelectedDay(long dayMillis);
+
+    /**
+     * Swaps cursor for calendar events
+     * @param cursor    {@link CalendarContract.Instances} cursor wrapper
+     */
+    void swapCursor(@NonNull EventCursor cursor);
+}
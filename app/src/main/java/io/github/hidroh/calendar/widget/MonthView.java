@@ -9,6 +9,7 @@ import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.text.SpannableString;
 import android.text.Spanned;
+import android.text.SpannedString;
 import android.text.format.DateUtils;
 import android.util.AttributeSet;
 import android.view.LayoutInflater;
@@ -18,9 +19,6 @@ import android.widget.TextView;
 
 import java.text.DateFormatSymbols;
 import java.util.Calendar;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Set;
 
 import io.github.hidroh.calendar.CalendarUtils;
 import io.github.hidroh.calendar.R;
@@ -31,9 +29,10 @@ import io.github.hidroh.calendar.text.style.UnderDotSpan;
 /**
  * Custom widget to display a grid of days in a month, represented by a {@link Calendar}
  */
-class MonthView extends RecyclerView {
+class MonthView extends RecyclerView implements MonthPage {
     private static final int SPANS_COUNT = 7; // days in week
     @VisibleForTesting long mMonthMillis;
+    private final DayLabels mDayLabels = new DayLabels();
     private GridAdapter mAdapter;
     private OnDateChangeListener mListener;
 
@@ -61,11 +60,8 @@ class MonthView extends RecyclerView {
         init();
     }
 
-    /**
-     * Sets listener to be notified when day selection changes
-     * @param listener  listener to be notified
-     */
-    void setOnDateChangeListener(OnDateChangeListener listener) {
+    @Override
+    public void setOnDateChangeListener(OnDateChangeListener listener) {
         mListener = listener;
     }
 
@@ -75,11 +71,8 @@ class MonthView extends RecyclerView {
         setCalendar(CalendarUtils.today());
     }
 
-    /**
-     * Sets month to display
-     * @param monthMillis  month to display in milliseconds
-     */
-    void setCalendar(long monthMillis) {
+    @Override
+    public void setCalendar(long monthMillis) {
         if (CalendarUtils.isNotTime(monthMillis)) {
             throw new IllegalArgumentException("Invalid timestamp value");
         }
@@ -87,7 +80,7 @@ class MonthView extends RecyclerView {
             return;
         }
         mMonthMillis = monthMillis;
-        mAdapter = new GridAdapter(monthMillis);
+        mAdapter = new GridAdapter(monthMillis, mDayLabels);
         mAdapter.registerAdapterDataObserver(new AdapterDataObserver() {
             @Override
             public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
@@ -102,11 +95,8 @@ class MonthView extends RecyclerView {
         setAdapter(mAdapter);
     }
 
-    /**
-     * Sets selected day if it falls within this month, unset any previously selected day otherwise
-     * @param dayMillis    selected day in milliseconds, {@link CalendarUtils#NO_TIME_MILLIS} to clear
-     */
-    void setSelectedDay(long dayMillis) {
+    @Override
+    public void setSelectedDay(long dayMillis) {
         if (CalendarUtils.isNotTime(mMonthMillis)) {
             return;
         }
@@ -119,11 +109,8 @@ class MonthView extends RecyclerView {
         }
     }
 
-    /**
-     * Swaps cursor for calendar events
-     * @param cursor    {@link CalendarContract.Events} cursor wrapper
-     */
-    void swapCursor(@NonNull EventCursor cursor) {
+    @Override
+    public void swapCursor(@NonNull EventCursor cursor) {
         mAdapter.swapCursor(cursor);
     }
 
@@ -134,11 +121,13 @@ class MonthView extends RecyclerView {
         private final int mStartOffset;
         private final int mDays;
         private final long mBaseTimeMillis;
-        @VisibleForTesting final Set<Integer> mEvents = new HashSet<>();
+        private final DayLabels mDayLabels;
+        @VisibleForTesting int mEvents = 0; // bit mask of day indices that have events
         private EventCursor mCursor;
         private int mSelectedPosition = -1;
 
-        public GridAdapter(long monthMillis) {
+        public GridAdapter(long monthMillis, DayLabels dayLabels) {
+            mDayLabels = dayLabels;
             mWeekdays = DateFormatSymbols.getInstance().getShortWeekdays();
             mBaseTimeMillis = CalendarUtils.monthFirstDay(monthMillis);
             mStartOffset = CalendarUtils.monthFirstDayOffset(mBaseTimeMillis) + SPANS_COUNT;
@@ -154,53 +143,35 @@ class MonthView extends RecyclerView {
                             R.layout.grid_item_header, parent, false));
                 case VIEW_TYPE_CONTENT:
                 default:
-                    return new ContentViewHolder(inflater.inflate(
+                    final ContentViewHolder holder = new ContentViewHolder(inflater.inflate(
                             R.layout.grid_item_content, parent, false));
+                    holder.textView.setOnClickListener(new OnClickListener() {
+                        @Override
+                        public void onClick(View v) {
+                            int adapterPosition = holder.getAdapterPosition();
+                            if (adapterPosition >= mStartOffset) { // not blank or NO_POSITION
+                                setSelectedPosition(adapterPosition, true);
+                            }
+                        }
+                    });
+                    return holder;
             }
         }
 
         @Override
         public void onBindViewHolder(CellViewHolder holder, int position) {
             if (holder instanceof HeaderViewHolder) {
-                int index;
-                switch (CalendarUtils.sWeekStart) {
-                    case Calendar.SATURDAY:
-                        index = position == 0 ? Calendar.SATURDAY : position;
-                        break;
-                    case Calendar.SUNDAY:
-                    default:
-                        index = position + Calendar.SUNDAY;
-                        break;
-                    case Calendar.MONDAY:
-                        index = position + Calendar.MONDAY == mWeekdays.length ?
-                                Calendar.SUNDAY : position + Calendar.MONDAY;
-                        break;
-                }
-                ((HeaderViewHolder) holder).textView.setText(mWeekdays[index]);
+                ((HeaderViewHolder) holder).textView.setText(mWeekdays[weekday(position)]);
             } else { // holder instanceof ContentViewHolder
                 if (position < mStartOffset) {
                     ((ContentViewHolder) holder).textView.setText(null);
                 } else {
-                    final int adapterPosition = holder.getAdapterPosition();
+                    int adapterPosition = holder.getAdapterPosition();
                     TextView textView = ((ContentViewHolder) holder).textView;
                     int dayIndex = adapterPosition - mStartOffset;
-                    String dayString = String.valueOf(dayIndex + 1);
-                    SpannableString spannable = new SpannableString(dayString);
-                    if (mSelectedPosition == adapterPosition) {
-                        spannable.setSpan(new CircleSpan(textView.getContext()), 0,
-                                dayString.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
-                    } else if (mEvents.contains(dayIndex)) {
-                        spannable.setSpan(new UnderDotSpan(textView.getContext()),
-                                0, dayString.length(),
-                                Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
-                    }
-                    textView.setText(spannable, TextView.BufferType.SPANNABLE);
-                    textView.setOnClickListener(new OnClickListener() {
-                        @Override
-                        public void onClick(View v) {
-                            setSelectedPosition(adapterPosition, true);
-                        }
-                    });
+                    textView.setText(mDayLabels.get(textView.getContext(), dayIndex,
+                            mSelectedPosition == adapterPosition, (mEvents & 1 << dayIndex) != 0),
+                            TextView.BufferType.NORMAL);
                 }
             }
         }
@@ -228,35 +199,15 @@ class MonthView extends RecyclerView {
                 return;
             }
             mCursor = cursor;
-            Iterator<Integer> iterator = mEvents.iterator();
-            while (iterator.hasNext()) {
-                int dayIndex = iterator.next();
-                iterator.remove();
+            int events = eventDays(cursor, mBaseTimeMillis, getItemCount() - mStartOffset);
+            // only rebind days whose event marker has been added or removed
+            int changed = mEvents ^ events;
+            mEvents = events;
+            while (changed != 0) {
+                int dayIndex = Integer.numberOfTrailingZeros(changed);
+                changed &= changed - 1;
                 notifyItemChanged(dayIndex + mStartOffset);
             }
-            if (!mCursor.moveToFirst()) {
-                return;
-            }
-            // TODO improve performance
-            do {
-                long start = mCursor.getDateTimeStart();
-                long end = mCursor.getDateTimeEnd();
-                boolean allDay = mCursor.getAllDay();
-                // all-day time in Calendar Provider is midnight in UTC, need to convert to local
-                if (allDay) {
-                    start = CalendarUtils.toLocalTimeZone(start);
-                    end = CalendarUtils.toLocalTimeZone(end) - DateUtils.DAY_IN_MILLIS;
-                }
-                int startIndex = (int) ((start - mBaseTimeMillis) / DateUtils.DAY_IN_MILLIS);
-                int endIndex = (int) ((end - mBaseTimeMillis) / DateUtils.DAY_IN_MILLIS);
-                endIndex = Math.min(endIndex, getItemCount() - mStartOffset - 1);
-                for (int dayIndex = startIndex; dayIndex <= endIndex; dayIndex++) {
-                    if (!mEvents.contains(dayIndex)) {
-                        mEvents.add(dayIndex);
-                        notifyItemChanged(dayIndex + mStartOffset);
-                    }
-                }
-            } while (mCursor.moveToNext());
         }
 
         private void setSelectedPosition(int position, boolean notifyObservers) {
@@ -277,6 +228,109 @@ class MonthView extends RecyclerView {
         }
     }
 
+    /**
+     * Gets day of week displayed in given column, based on {@link CalendarUtils#sWeekStart}
+     * @param column    0-based column
+     * @return  day of week, e.g. {@link Calendar#SUNDAY}
+     */
+    static int weekday(int column) {
+        switch (CalendarUtils.sWeekStart) {
+            case Calendar.SATURDAY:
+                return column == 0 ? Calendar.SATURDAY : column;
+            case Calendar.SUNDAY:
+            default:
+                return column + Calendar.SUNDAY;
+            case Calendar.MONDAY:
+                return column + Calendar.MONDAY > Calendar.SATURDAY ?
+                        Calendar.SUNDAY : column + Calendar.MONDAY;
+        }
+    }
+
+    /**
+     * Computes days of month that have events from given cursor
+     * @param cursor            {@link CalendarContract.Instances} cursor wrapper
+     * @param monthMillis       first day of month in milliseconds
+     * @param days              number of days in month
+     * @return  bit mask of 0-based days of month that have events
+     */
+    static int eventDays(@NonNull EventCursor cursor, long monthMillis, int days) {
+        int events = 0;
+        if (!cursor.moveToFirst()) {
+            return events;
+        }
+        do {
+            long start = cursor.getDateTimeStart();
+            long end = cursor.getDateTimeEnd();
+            boolean allDay = cursor.getAllDay();
+            // all-day time in Calendar Provider is midnight in UTC, need to convert to local
+            if (allDay) {
+                start = CalendarUtils.toLocalTimeZone(start);
+                end = CalendarUtils.toLocalTimeZone(end) - DateUtils.DAY_IN_MILLIS;
+            }
+            int startIndex = Math.max(0,
+                    (int) ((start - monthMillis) / DateUtils.DAY_IN_MILLIS));
+            int endIndex = Math.min(days - 1,
+                    (int) ((end - monthMillis) / DateUtils.DAY_IN_MILLIS));
+            if (startIndex <= endIndex) {
+                // bits from start index to end index inclusive
+                events |= -1 >>> (31 - endIndex) & -1 << startIndex;
+            }
+        } while (cursor.moveToNext());
+        return events;
+    }
+
+    /**
+     * Cache of day labels in normal, selected and has events states, with spans resolved
+     * from theme once and shared by all grids of a {@link MonthView}. Labels are immutable
+     * so that they can be bound as is, without being copied
+     */
+    static class DayLabels {
+        private static final int MAX_DAYS = 31;
+        private static final int STATE_NORMAL = 0;
+        private static final int STATE_SELECTED = 1;
+        private static final int STATE_EVENTS = 2;
+        static final String[] DAYS = new String[MAX_DAYS];
+        static {
+            for (int i = 0; i < MAX_DAYS; i++) {
+                DAYS[i] = String.valueOf(i + 1);
+            }
+        }
+        private final SpannedString[] mLabels = new SpannedString[MAX_DAYS * 3];
+        private CircleSpan mCircleSpan;
+        private UnderDotSpan mUnderDotSpan;
+
+        /**
+         * Gets label for given day, selection takes precedence over events marker
+         * @param context      context to resolve spans from theme if not yet resolved
+         * @param dayIndex     0-based day of month
+         * @param selected     true if given day is selected, false otherwise
+         * @param hasEvents    true if given day has events, false otherwise
+         * @return  day label
+         */
+        CharSequence get(Context context, int dayIndex, boolean selected, boolean hasEvents) {
+            int state = selected ? STATE_SELECTED : hasEvents ? STATE_EVENTS : STATE_NORMAL;
+            int index = state * MAX_DAYS + dayIndex;
+            if (mLabels[index] == null) {
+                SpannableString label = new SpannableString(DAYS[dayIndex]);
+                if (state == STATE_SELECTED) {
+                    if (mCircleSpan == null) {
+                        mCircleSpan = new CircleSpan(context);
+                    }
+                    label.setSpan(mCircleSpan, 0, label.length(),
+                            Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                } else if (state == STATE_EVENTS) {
+                    if (mUnderDotSpan == null) {
+                        mUnderDotSpan = new UnderDotSpan(context);
+                    }
+                    label.setSpan(mUnderDotSpan, 0, label.length(),
+                            Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                }
+                mLabels[index] = new SpannedString(label);
+            }
+            return mLabels[index];
+        }
+    }
+
     static abstract class CellViewHolder extends RecyclerView.ViewHolder {
 
         public CellViewHolder(View itemView) {
@@ -15,6 +15,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import io.github.hidroh.calendar.CalendarUtils;
+import io.github.hidroh.calendar.StartupTrace;
 import io.github.hidroh.calendar.content.EventCursor;
 
 /**
@@ -30,16 +31,23 @@ class MonthViewPagerAdapter extends PagerAdapter {
     private static final String STATE_SELECTED_DAY_MILLIS = "state:selectedDay";
     static final int ITEM_COUNT = 5; // buffer, left, active, right, buffer
 
-    @VisibleForTesting final List<MonthView> mViews = new ArrayList<>(getCount());
+    @VisibleForTesting final List<MonthPage> mViews = new ArrayList<>(getCount());
     @VisibleForTesting long mSelectedDayMillis = CalendarUtils.today();
     private final List<Long> mMonths = new ArrayList<>(getCount());
     private final MonthView.OnDateChangeListener mListener;
+    private final boolean mDrawnGrid;
     private final List<EventCursor> mCursors = new ArrayList<>(getCount());
     private final ArrayMap<EventCursor, ContentObserver> mObservers =
             new ArrayMap<>(getCount());
 
-    public MonthViewPagerAdapter(MonthView.OnDateChangeListener listener) {
+    /**
+     * Creates pager adapter with month pages of given type
+     * @param listener     listener to be notified when day selection changes
+     * @param drawnGrid    true to use {@link MonthGridView}, false to use {@link MonthView}
+     */
+    public MonthViewPagerAdapter(MonthView.OnDateChangeListener listener, boolean drawnGrid) {
         mListener = listener;
+        mDrawnGrid = drawnGrid;
         int mid = ITEM_COUNT / 2;
         long todayMillis = CalendarUtils.monthFirstDay(CalendarUtils.today());
         for (int i = 0; i < getCount(); i++) {
@@ -51,10 +59,12 @@ class MonthViewPagerAdapter extends PagerAdapter {
 
     @Override
     public Object instantiateItem(ViewGroup container, int position) {
-        MonthView view = new MonthView(container.getContext());
+        MonthPage page = mDrawnGrid ? new MonthGridView(container.getContext()) :
+                new MonthView(container.getContext());
+        View view = (View) page;
         view.setLayoutParams(new ViewPager.LayoutParams());
-        view.setOnDateChangeListener(mListener);
-        mViews.set(position, view);
+        page.setOnDateChangeListener(mListener);
+        mViews.set(position, page);
         container.addView(view); // views are not added in same order as adapter items
         bind(position);
         return view;
@@ -62,7 +72,7 @@ class MonthViewPagerAdapter extends PagerAdapter {
 
     @Override
     public void destroyItem(ViewGroup container, int position, Object object) {
-        ((MonthView) object).setOnDateChangeListener(null);
+        ((MonthPage) object).setOnDateChangeListener(null);
         container.removeView((View) object);
     }
 
@@ -128,15 +138,14 @@ class MonthViewPagerAdapter extends PagerAdapter {
 
     /**
      * Shifts Jan, Feb, Mar, Apr, [May] to Apr, [May], Jun, Jul, Aug
-     * Rebinds views in view pool if needed
+     * Keeps cursors for Apr, May, rebinds views in view pool if needed
      */
     void shiftLeft() {
         for (int i = 0; i < getCount() - 2; i++) {
             mMonths.add(CalendarUtils.addMonths(mMonths.remove(0), getCount()));
-        }
-        // TODO only deactivate non reusable cursors
-        for (int i = 0; i < getCount(); i++) {
-            swapCursor(i, null, null);
+            // only deactivate cursors of months shifted out, keep those of remaining months
+            deactivate(mCursors.remove(0));
+            mCursors.add(null);
         }
         // rebind current item (2nd) and 2 adjacent items
         for (int i = 0; i <= 2; i++) {
@@ -146,16 +155,14 @@ class MonthViewPagerAdapter extends PagerAdapter {
 
     /**
      * Shifts [Jan], Feb, Mar, Apr, May to Oct, Nov, Dec, [Jan], Feb
-     * Rebinds views in view pool if needed
+     * Keeps cursors for Jan, Feb, rebinds views in view pool if needed
      */
     void shiftRight() {
         for (int i = 0; i < getCount() - 2; i++) {
             mMonths.add(0, CalendarUtils.addMonths(mMonths.remove(getCount() - 1), -getCount()));
-            mCursors.add(0, mCursors.remove(getCount() - 1));
-        }
-        // TODO only deactivate non reusable cursors
-        for (int i = 0; i < getCount(); i++) {
-            swapCursor(i, null, null);
+            // only deactivate cursors of months shifted out, keep those of remaining months
+            deactivate(mCursors.remove(getCount() - 1));
+            mCursors.add(0, null);
         }
         // rebind current item (2nd to last) and 2 adjacent items
         for (int i = 0; i <= 2; i++) {
@@ -178,7 +185,7 @@ class MonthViewPagerAdapter extends PagerAdapter {
     /**
      * Gets cursor for calendar events at given position
      * @param position    adapter position
-     * @return  {@link android.provider.CalendarContract.Events} cursor wrapper or null
+     * @return  {@link android.provider.CalendarContract.Instances} cursor wrapper or null
      * @see {@link #swapCursor(long, EventCursor, ContentObserver)}
      */
     EventCursor getCursor(int position) {
@@ -189,17 +196,23 @@ class MonthViewPagerAdapter extends PagerAdapter {
      * Swaps cursor for calendar events for given month
      * Closes previously bound cursor, unregisters observer if any
      * @param monthMillis       month in milliseconds
-     * @param cursor            {@link android.provider.CalendarContract.Events} cursor wrapper or null
+     * @param cursor            {@link android.provider.CalendarContract.Instances} cursor wrapper or null
      * @param contentObserver   content observer for given cursor
+     * @return  true if cursor has been bound, false if month is no longer in this adapter,
+     *          in which case cursor is closed
      */
-    void swapCursor(long monthMillis, @Nullable EventCursor cursor,
-                    ContentObserver contentObserver) {
+    boolean swapCursor(long monthMillis, @Nullable EventCursor cursor,
+                       ContentObserver contentObserver) {
         for (int i = 0; i < mMonths.size(); i++) {
             if (CalendarUtils.sameMonth(monthMillis, mMonths.get(i))) {
                 swapCursor(i, cursor, contentObserver);
-                break;
+                return true;
             }
         }
+        if (cursor != null) {
+            cursor.close(); // month has been shifted out while loading
+        }
+        return false;
     }
 
     /**
@@ -240,7 +253,9 @@ class MonthViewPagerAdapter extends PagerAdapter {
 
     private void bindCursor(int position) {
         if (mCursors.get(position) != null && mViews.get(position) != null) {
+            int span = StartupTrace.begin("bindMonth");
             mViews.get(position).swapCursor(mCursors.get(position));
+            StartupTrace.end(span);
         }
     }
 
@@ -26,6 +26,7 @@ public class CalendarUtilsTest {
         Locale.setDefault(Locale.US);
         defaultTimeZone = TimeZone.getDefault();
         TimeZone.setDefault(TimeZone.getTimeZone("Asia/Singapore"));
+        CivilDate.invalidate();
     }
 
     @Test
@@ -221,5 +222,6 @@ public class CalendarUtilsTest {
     public void tearDown() {
         Locale.setDefault(defaultLocale);
         TimeZone.setDefault(defaultTimeZone);
+        CivilDate.invalidate();
     }
 }
@@ -0,0 +1,188 @@
+package io.github.hidroh.calendar;
+
+import android.content.Intent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricGradleTestRunner.class)
+public class CivilDateTest {
+    private TimeZone defaultTimeZone;
+
+    @Before
+    public void setUp() {
+        defaultTimeZone = TimeZone.getDefault();
+    }
+
+    @Test
+    public void testEpochDay() {
+        assertThat(CivilDate.epochDay(1970, Calendar.JANUARY, 1)).isEqualTo(0);
+        assertThat(CivilDate.epochDay(1969, Calendar.DECEMBER, 31)).isEqualTo(-1);
+        assertThat(CivilDate.epochDay(2000, Calendar.MARCH, 1)).isEqualTo(11017);
+        // overflowing month and day
+        assertThat(CivilDate.epochDay(2016, Calendar.DECEMBER + 1, 1))
+                .isEqualTo(CivilDate.epochDay(2017, Calendar.JANUARY, 1));
+        assertThat(CivilDate.epochDay(2016, Calendar.FEBRUARY, 30))
+                .isEqualTo(CivilDate.epochDay(2016, Calendar.MARCH, 1));
+    }
+
+    @Test
+    public void testYearMonth() {
+        int yearMonth = CivilDate.yearMonth(CivilDate.epochDay(2016, Calendar.FEBRUARY, 29));
+        assertThat(CivilDate.year(yearMonth)).isEqualTo(2016);
+        assertThat(CivilDate.month(yearMonth)).isEqualTo(Calendar.FEBRUARY);
+        assertThat(CivilDate.monthLength(yearMonth)).isEqualTo(29);
+        assertThat(CivilDate.monthLength(CivilDate.yearMonth(1900, Calendar.FEBRUARY)))
+                .isEqualTo(28);
+        assertThat(CivilDate.monthLength(CivilDate.yearMonth(2000, Calendar.FEBRUARY)))
+                .isEqualTo(29);
+        assertThat(CivilDate.dayOfMonth(CivilDate.epochDay(2016, Calendar.FEBRUARY, 29)))
+                .isEqualTo(29);
+    }
+
+    @Test
+    public void testMatchesCalendar() {
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        CivilDate.invalidate();
+        Calendar calendar = new GregorianCalendar(1900, Calendar.JANUARY, 1);
+        for (long epochDay = CivilDate.epochDay(1900, Calendar.JANUARY, 1);
+             epochDay < CivilDate.epochDay(2100, Calendar.JANUARY, 1);
+             epochDay++) {
+            int yearMonth = CivilDate.yearMonth(epochDay);
+            assertThat(CivilDate.year(yearMonth)).isEqualTo(calendar.get(Calendar.YEAR));
+            assertThat(CivilDate.month(yearMonth)).isEqualTo(calendar.get(Calendar.MONTH));
+            assertThat(CivilDate.dayOfMonth(epochDay))
+                    .isEqualTo(calendar.get(Calendar.DAY_OF_MONTH));
+            assertThat(CivilDate.dayOfWeek(epochDay))
+                    .isEqualTo(calendar.get(Calendar.DAY_OF_WEEK));
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+    }
+
+    @Test
+    public void testWeekOffset() {
+        long march1 = CivilDate.epochDay(2016, Calendar.MARCH, 1); // Tuesday
+        assertThat(CivilDate.weekOffset(march1, Calendar.SUNDAY)).isEqualTo(2);
+        assertThat(CivilDate.weekOffset(march1, Calendar.MONDAY)).isEqualTo(1);
+        assertThat(CivilDate.weekOffset(march1, Calendar.SATURDAY)).isEqualTo(3);
+        assertThat(CivilDate.weekOffset(march1, Calendar.TUESDAY)).isEqualTo(0);
+    }
+
+    @Test
+    public void testStartOfDay() {
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Singapore"));
+        CivilDate.invalidate();
+        long epochDay = CivilDate.epochDay(2016, Calendar.MARCH, 20);
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2016, Calendar.MARCH, 20);
+        assertThat(CivilDate.startOfDay(epochDay)).isEqualTo(calendar.getTimeInMillis());
+        assertThat(CivilDate.localDay(calendar.getTimeInMillis() + 1)).isEqualTo(epochDay);
+        assertThat(CivilDate.localDay(calendar.getTimeInMillis() - 1)).isEqualTo(epochDay - 1);
+    }
+
+    @Test
+    public void testLocalMinuteOfDay() {
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Singapore"));
+        CivilDate.invalidate();
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2016, Calendar.MARCH, 20, 9, 30, 59);
+        assertThat(CivilDate.localMinuteOfDay(calendar.getTimeInMillis())).isEqualTo(9 * 60 + 30);
+        calendar.set(1960, Calendar.MARCH, 20, 0, 0, 0); // before epoch
+        assertThat(CivilDate.localMinuteOfDay(calendar.getTimeInMillis())).isEqualTo(0);
+        calendar.add(Calendar.MINUTE, -1);
+        assertThat(CivilDate.localMinuteOfDay(calendar.getTimeInMillis())).isEqualTo(24 * 60 - 1);
+    }
+
+    @Test
+    public void testStartOfDaySkippedMidnight() {
+        // daylight saving started at midnight on 2016-10-16 in Sao Paulo
+        TimeZone.setDefault(TimeZone.getTimeZone("America/Sao_Paulo"));
+        CivilDate.invalidate();
+        long epochDay = CivilDate.epochDay(2016, Calendar.OCTOBER, 16);
+        long startOfDay = CivilDate.startOfDay(epochDay);
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(startOfDay);
+        assertThat(calendar.get(Calendar.DAY_OF_MONTH)).isEqualTo(16);
+        assertThat(calendar.get(Calendar.HOUR_OF_DAY)).isEqualTo(1);
+        assertThat(CivilDate.localDay(startOfDay)).isEqualTo(epochDay);
+        assertThat(CivilDate.localDay(startOfDay - 1)).isEqualTo(epochDay - 1);
+    }
+
+    @Test
+    public void testWallTime() {
+        TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+        CivilDate.invalidate();
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2016, Calendar.NOVEMBER, 6, 1, 30); // repeated
+        long timeMillis = calendar.getTimeInMillis();
+        assertThat(CivilDate.fromWallTime(CivilDate.toWallTime(timeMillis)))
+                .isEqualTo(timeMillis);
+        calendar.set(2016, Calendar.MARCH, 13, 2, 30); // skipped
+        long wallTimeMillis = CivilDate.epochDay(2016, Calendar.MARCH, 13) * CivilDate.DAY_MILLIS
+                + 150 * 60 * 1000;
+        assertThat(CivilDate.fromWallTime(wallTimeMillis)).isEqualTo(calendar.getTimeInMillis());
+    }
+
+    @Test
+    public void testWallTimeMatchesCalendar() {
+        String[] timeZones = {"America/New_York", "Europe/London", "Australia/Lord_Howe"};
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        long now = System.currentTimeMillis();
+        for (String timeZone : timeZones) {
+            TimeZone.setDefault(TimeZone.getTimeZone(timeZone));
+            CivilDate.invalidate();
+            Calendar local = Calendar.getInstance();
+            // every 15 minutes within 2 years around now, covered by transition table
+            for (long timeMillis = now - 366 * CivilDate.DAY_MILLIS;
+                 timeMillis < now + 366 * CivilDate.DAY_MILLIS;
+                 timeMillis += 15 * 60 * 1000) {
+                local.setTimeInMillis(timeMillis);
+                utc.clear();
+                utc.set(local.get(Calendar.YEAR), local.get(Calendar.MONTH),
+                        local.get(Calendar.DAY_OF_MONTH), local.get(Calendar.HOUR_OF_DAY),
+                        local.get(Calendar.MINUTE), local.get(Calendar.SECOND));
+                utc.set(Calendar.MILLISECOND, local.get(Calendar.MILLISECOND));
+                assertThat(CivilDate.toWallTime(timeMillis)).isEqualTo(utc.getTimeInMillis());
+                utc.setTimeInMillis(timeMillis);
+                local.clear();
+                local.set(utc.get(Calendar.YEAR), utc.get(Calendar.MONTH),
+                        utc.get(Calendar.DAY_OF_MONTH), utc.get(Calendar.HOUR_OF_DAY),
+                        utc.get(Calendar.MINUTE), utc.get(Calendar.SECOND));
+                local.set(Calendar.MILLISECOND, utc.get(Calendar.MILLISECOND));
+                assertThat(CivilDate.fromWallTime(timeMillis)).isEqualTo(local.getTimeInMillis());
+            }
+        }
+    }
+
+    @Test
+    public void testTimeZoneChange() {
+        TimeZone.setDefault(TimeZone.getTimeZone("GMT+10"));
+        CivilDate.invalidate();
+        assertThat(CivilDate.toWallTime(0)).isEqualTo(10 * 60 * 60 * 1000L);
+        // cached zone is kept until invalidated
+        TimeZone.setDefault(TimeZone.getTimeZone("GMT-10"));
+        assertThat(CivilDate.toWallTime(0)).isEqualTo(10 * 60 * 60 * 1000L);
+        new TimeZoneReceiver().onReceive(RuntimeEnvironment.application,
+                new Intent(Intent.ACTION_TIMEZONE_CHANGED));
+        assertThat(CivilDate.toWallTime(0)).isEqualTo(-10 * 60 * 60 * 1000L);
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultTimeZone);
+        CivilDate.invalidate();
+    }
+}
@@ -31,6 +31,7 @@ import java.util.Arrays;
 import java.util.Calendar;
 
 import io.github.hidroh.calendar.content.EventCursor;
+import io.github.hidroh.calendar.content.TestEventStore;
 import io.github.hidroh.calendar.test.shadows.ShadowLinearLayoutManager;
 import io.github.hidroh.calendar.test.shadows.ShadowRecyclerView;
 import io.github.hidroh.calendar.test.shadows.ShadowViewPager;
@@ -204,7 +205,7 @@ public class MainActivityTest {
                 new Object[]{1L, 1L, "Event 1", CalendarUtils.today(), CalendarUtils.today(), 0}
         });
         shadowOf(ShadowApplication.getInstance().getContentResolver())
-                .setCursor(CalendarContract.Events.CONTENT_URI, cursor);
+                .setCursor(CalendarContract.Instances.CONTENT_URI, cursor);
 
         // trigger loading from provider
         int firstPosition = ((LinearLayoutManager) agendaView.getLayoutManager())
@@ -212,8 +213,13 @@ public class MainActivityTest {
         agendaView.getAdapter().bindViewHolder(agendaView.getAdapter()
                 .createViewHolder(agendaView, agendaView.getAdapter().
                         getItemViewType(firstPosition)), firstPosition);
-        ((MainActivity.AgendaCursorAdapter) agendaView.getAdapter())
-                .mHandler.handleQueryComplete(0, CalendarUtils.today(), new EventCursor(cursor));
+        // agenda block starting today may span up to 3 months
+        long monthMillis = CalendarUtils.monthFirstDay(CalendarUtils.today());
+        TestEventStore.completeQuery(activity, monthMillis, new EventCursor(cursor));
+        TestEventStore.completeQuery(activity, CalendarUtils.addMonths(monthMillis, 1),
+                new EventCursor(new TestRoboCursor()));
+        TestEventStore.completeQuery(activity, CalendarUtils.addMonths(monthMillis, 2),
+                new EventCursor(new TestRoboCursor()));
 
         // binding from provider should replace placeholder
         RecyclerView.ViewHolder viewHolder = agendaView.getAdapter()
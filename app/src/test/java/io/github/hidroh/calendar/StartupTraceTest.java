@@ -0,0 +1,44 @@
+package io.github.hidroh.calendar;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricGradleTestRunner.class)
+public class StartupTraceTest {
+    @Test
+    public void testTrace() {
+        // spans should not be traced before start
+        assertThat(StartupTrace.begin("early")).isEqualTo(StartupTrace.NO_SPAN);
+
+        StartupTrace.start();
+        int outer = StartupTrace.begin("outer");
+        int inner = StartupTrace.begin("inner");
+        StartupTrace.end(inner);
+        StartupTrace.end(outer);
+        StartupTrace.begin("pending");
+        assertThat(outer).isNotEqualTo(inner);
+        assertThat(StartupTrace.format(System.nanoTime()))
+                .startsWith("startup ")
+                .contains(" outer@")
+                .contains(" inner@")
+                .doesNotContain("early")
+                .endsWith("+?"); // unfinished span
+
+        // spans should not be traced after finish
+        StartupTrace.finish();
+        assertThat(StartupTrace.begin("late")).isEqualTo(StartupTrace.NO_SPAN);
+    }
+
+    @Test
+    public void testMaxSpans() {
+        StartupTrace.start();
+        for (int i = 0; i < StartupTrace.MAX_SPANS; i++) {
+            assertThat(StartupTrace.begin("span")).isEqualTo(i);
+        }
+        assertThat(StartupTrace.begin("overflow")).isEqualTo(StartupTrace.NO_SPAN);
+        StartupTrace.finish();
+    }
+}
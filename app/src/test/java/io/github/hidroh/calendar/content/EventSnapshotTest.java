@@ -0,0 +1,94 @@
+package io.github.hidroh.calendar.content;
+
+import android.support.v4.util.LongSparseArray;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.TimeZone;
+
+import io.github.hidroh.calendar.CivilDate;
+import io.github.hidroh.calendar.test.TestEventCursor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricGradleTestRunner.class)
+public class EventSnapshotTest {
+    private final EventCursor.Projection projection = new EventCursor.Projection.Builder()
+            .calendarId()
+            .build();
+    private File file;
+    private EventSnapshot snapshot;
+    private TimeZone defaultTimeZone;
+
+    @Before
+    public void setUp() {
+        defaultTimeZone = TimeZone.getDefault();
+        file = new File(RuntimeEnvironment.application.getCacheDir(), "test.snapshot");
+        snapshot = new EventSnapshot(file);
+    }
+
+    @Test
+    public void testReadWrite() {
+        TestEventCursor cursor = new TestEventCursor();
+        cursor.addRow(new Object[]{1L, 2L, "Event 1", 1000L, 2000L, 1});
+        cursor.addRow(new Object[]{3L, 4L, null, 3000L, 4000L, 0});
+        EventTable table = EventTable.from(cursor);
+        cursor = new TestEventCursor(projection);
+        cursor.addRow(new Object[]{5L, 6L, 5000L, 6000L, 0});
+        EventTable otherTable = EventTable.from(cursor);
+        LongSparseArray<EventTable> months = new LongSparseArray<>();
+        months.put(100L, table);
+        months.put(200L, otherTable);
+        snapshot.write(months);
+
+        // restored tables should have same content, and be marked as stale
+        LongSparseArray<EventTable> restored = snapshot.read();
+        assertThat(restored.size()).isEqualTo(2);
+        assertThat(restored.get(100L).contentEquals(table)).isTrue();
+        assertThat(restored.get(100L).mStale).isTrue();
+        assertThat(restored.get(200L).mProjection).isSameAs(projection);
+        assertThat(restored.get(200L).contentEquals(otherTable)).isTrue();
+    }
+
+    @Test
+    public void testReadChangedTimeZone() {
+        LongSparseArray<EventTable> months = new LongSparseArray<>();
+        months.put(100L, new EventTable(0, EventCursor.Projection.ALL));
+        TimeZone.setDefault(TimeZone.getTimeZone("GMT+10"));
+        CivilDate.invalidate();
+        snapshot.write(months);
+        assertThat(snapshot.read().size()).isEqualTo(1);
+
+        // months are keyed in local time, snapshot from other time zone should be ignored
+        TimeZone.setDefault(TimeZone.getTimeZone("GMT-10"));
+        CivilDate.invalidate();
+        assertThat(snapshot.read().size()).isZero();
+    }
+
+    @Test
+    public void testReadInvalid() throws IOException {
+        assertThat(snapshot.read().size()).isZero();
+
+        // corrupted snapshot should be ignored
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[]{1, 2, 3});
+        out.close();
+        assertThat(snapshot.read().size()).isZero();
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultTimeZone);
+        CivilDate.invalidate();
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+}
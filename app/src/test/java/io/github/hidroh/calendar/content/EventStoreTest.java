@@ -0,0 +1,345 @@
+package io.github.hidroh.calendar.content;
+
+import android.database.ContentObserver;
+import android.provider.CalendarContract;
+import android.support.v4.util.LongSparseArray;
+import android.text.format.DateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TimeZone;
+
+import io.github.hidroh.calendar.CalendarUtils;
+import io.github.hidroh.calendar.CivilDate;
+import io.github.hidroh.calendar.test.TestEventCursor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@RunWith(RobolectricGradleTestRunner.class)
+public class EventStoreTest {
+    private final long monthMillis = CalendarUtils.monthFirstDay(CalendarUtils.today());
+    private final long nextMonthMillis = CalendarUtils.addMonths(monthMillis, 1);
+    private final TimeZone defaultTimeZone = TimeZone.getDefault();
+    private EventStore eventStore;
+    private EventCursor result;
+    private final EventStore.Callback callback = new EventStore.Callback() {
+        @Override
+        public boolean onLoaded(EventCursor cursor) {
+            result = cursor;
+            return true;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        eventStore = EventStore.getInstance(RuntimeEnvironment.application);
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultTimeZone);
+        CivilDate.invalidate();
+    }
+
+    @Test
+    public void testQueryFromMemory() {
+        eventStore.query(monthMillis, monthMillis + DateUtils.DAY_IN_MILLIS,
+                Collections.<String>emptySet(), callback);
+        assertThat(result).isNull();
+
+        // loading month should deliver instances of requested day only
+        TestEventCursor cursor = new TestEventCursor();
+        cursor.addRow(new Object[]{1L, 1L, "Event 1", monthMillis + 1000, monthMillis + 2000, 0});
+        cursor.addRow(new Object[]{2L, 1L, "Event 2", monthMillis + DateUtils.DAY_IN_MILLIS,
+                monthMillis + DateUtils.DAY_IN_MILLIS, 0});
+        eventStore.onMonthLoaded(eventStore.mGeneration, monthMillis, cursor);
+        assertThat(cursor.isClosed()).isTrue();
+        assertThat(result.getCount()).isEqualTo(1);
+        assertThat(result.moveToFirst()).isTrue();
+        assertThat(result.getTitle()).isEqualTo("Event 1");
+
+        // loaded month should be served without querying again
+        result = null;
+        eventStore.query(monthMillis + DateUtils.DAY_IN_MILLIS,
+                monthMillis + DateUtils.DAY_IN_MILLIS * 2,
+                Collections.<String>emptySet(), callback);
+        assertThat(result.getCount()).isEqualTo(1);
+        assertThat(result.moveToFirst()).isTrue();
+        assertThat(result.getId()).isEqualTo(2L);
+    }
+
+    @Test
+    public void testQueryMultipleMonths() {
+        Set<String> excludedCalendarIds = new HashSet<>();
+        excludedCalendarIds.add("2");
+        eventStore.query(nextMonthMillis - DateUtils.DAY_IN_MILLIS,
+                nextMonthMillis + DateUtils.DAY_IN_MILLIS, excludedCalendarIds, callback);
+
+        // instance that spans 2 months is returned for both
+        TestEventCursor cursor = new TestEventCursor();
+        cursor.addRow(new Object[]{1L, 1L, "Event 1", nextMonthMillis - 1000,
+                nextMonthMillis + 1000, 0});
+        cursor.addRow(new Object[]{2L, 2L, "Event 2", nextMonthMillis - 2000,
+                nextMonthMillis - 1000, 0});
+        eventStore.onMonthLoaded(eventStore.mGeneration, monthMillis, cursor);
+        assertThat(result).isNull();
+        cursor = new TestEventCursor();
+        cursor.addRow(new Object[]{1L, 1L, "Event 1", nextMonthMillis - 1000,
+                nextMonthMillis + 1000, 0});
+        cursor.addRow(new Object[]{3L, 1L, "Event 3", nextMonthMillis + 2000,
+                nextMonthMillis + 3000, 0});
+        eventStore.onMonthLoaded(eventStore.mGeneration, nextMonthMillis, cursor);
+
+        // should not duplicate instance from 2 months or include excluded calendar
+        assertThat(result.getCount()).isEqualTo(2);
+        assertThat(result.moveToFirst()).isTrue();
+        assertThat(result.getId()).isEqualTo(1L);
+        assertThat(result.moveToNext()).isTrue();
+        assertThat(result.getId()).isEqualTo(3L);
+    }
+
+    @Test
+    public void testQueryMultipleMonthsAllDay() {
+        TimeZone.setDefault(TimeZone.getTimeZone("GMT-5"));
+        CivilDate.invalidate();
+        long monthMillis = CalendarUtils.monthFirstDay(CalendarUtils.today()),
+                nextMonthMillis = CalendarUtils.addMonths(monthMillis, 1);
+        eventStore.query(nextMonthMillis - DateUtils.DAY_IN_MILLIS,
+                nextMonthMillis + DateUtils.DAY_IN_MILLIS, Collections.<String>emptySet(),
+                callback);
+
+        // all day instance on first day of month starts in previous month in UTC-5
+        Object[] row = new Object[]{1L, 1L, "Event 1",
+                CalendarUtils.toUtcTimeZone(nextMonthMillis),
+                CalendarUtils.toUtcTimeZone(nextMonthMillis + DateUtils.DAY_IN_MILLIS), 1};
+        TestEventCursor cursor = new TestEventCursor();
+        cursor.addRow(row);
+        eventStore.onMonthLoaded(eventStore.mGeneration, monthMillis, cursor);
+        cursor = new TestEventCursor();
+        cursor.addRow(row);
+        eventStore.onMonthLoaded(eventStore.mGeneration, nextMonthMillis, cursor);
+
+        // should not duplicate instance from 2 months
+        assertThat(result.getCount()).isEqualTo(1);
+        assertThat(result.moveToFirst()).isTrue();
+        assertThat(result.getId()).isEqualTo(1L);
+    }
+
+    @Test
+    public void testPrefetchAndEviction() {
+        // prefetched month should be served from memory
+        eventStore.prefetch(monthMillis + DateUtils.DAY_IN_MILLIS, EventCursor.Projection.ALL);
+        eventStore.onMonthLoaded(eventStore.mGeneration, monthMillis, new TestEventCursor());
+        eventStore.query(monthMillis, nextMonthMillis, Collections.<String>emptySet(), callback);
+        assertThat(result).isNotNull();
+
+        // least recently used month should be evicted once limit is reached
+        for (int i = 1; i <= EventStore.MAX_MONTHS; i++) {
+            long otherMonthMillis = CalendarUtils.addMonths(monthMillis, i);
+            eventStore.prefetch(otherMonthMillis, EventCursor.Projection.ALL);
+            eventStore.onMonthLoaded(eventStore.mGeneration, otherMonthMillis,
+                    new TestEventCursor());
+        }
+        result = null;
+        eventStore.query(monthMillis, nextMonthMillis, Collections.<String>emptySet(), callback);
+        assertThat(result).isNull();
+        eventStore.onMonthLoaded(eventStore.mGeneration, monthMillis, new TestEventCursor());
+        assertThat(result).isNotNull();
+    }
+
+    @Test
+    public void testQueryProjection() {
+        EventCursor.Projection projection = new EventCursor.Projection.Builder()
+                .calendarId()
+                .build();
+        assertThat(projection.getColumnNames()).doesNotContain(CalendarContract.Instances.TITLE);
+        assertThat(EventCursor.Projection.ALL.contains(projection)).isTrue();
+        assertThat(projection.contains(EventCursor.Projection.ALL)).isFalse();
+
+        // month loaded without titles should only serve requests without titles
+        eventStore.query(monthMillis, nextMonthMillis, Collections.<String>emptySet(),
+                projection, callback);
+        TestEventCursor cursor = new TestEventCursor(projection);
+        cursor.addRow(new Object[]{1L, 2L, monthMillis + 1000, monthMillis + 2000, 0});
+        eventStore.onMonthLoaded(eventStore.mGeneration, monthMillis, cursor);
+        assertThat(result.getProjection()).isSameAs(projection);
+        assertThat(result.moveToFirst()).isTrue();
+        assertThat(result.getCalendarId()).isEqualTo(2L);
+        assertThat(result.getTitle()).isNull();
+        assertThat(result.getDateTimeEnd()).isEqualTo(monthMillis + 2000);
+
+        // request with titles should reload month
+        result = null;
+        eventStore.query(monthMillis, nextMonthMillis, Collections.<String>emptySet(), callback);
+        assertThat(result).isNull();
+        cursor = new TestEventCursor();
+        cursor.addRow(new Object[]{1L, 2L, "Event 1", monthMillis + 1000, monthMillis + 2000, 0});
+        eventStore.onMonthLoaded(eventStore.mGeneration, monthMillis, cursor);
+        assertThat(result.moveToFirst()).isTrue();
+        assertThat(result.getTitle()).isEqualTo("Event 1");
+
+        // month loaded with titles should serve requests without titles
+        result = null;
+        eventStore.query(monthMillis, nextMonthMillis, Collections.<String>emptySet(),
+                projection, callback);
+        assertThat(result.getProjection()).isSameAs(projection);
+        assertThat(result.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCancel() {
+        // cancelled request should not be delivered
+        eventStore.query(monthMillis, nextMonthMillis, Collections.<String>emptySet(), callback);
+        eventStore.cancel(callback);
+        eventStore.onMonthLoaded(eventStore.mGeneration, monthMillis, new TestEventCursor());
+        assertThat(result).isNull();
+        assertThat(eventStore.getCancelledCount()).isEqualTo(1);
+
+        // discarded results should be counted as wasted
+        eventStore.query(monthMillis, nextMonthMillis, Collections.<String>emptySet(),
+                new EventStore.Callback() {
+                    @Override
+                    public boolean onLoaded(EventCursor cursor) {
+                        cursor.close();
+                        return false;
+                    }
+                });
+        assertThat(eventStore.getWastedCount()).isEqualTo(1);
+        assertThat(eventStore.getCancelledCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRestoreSnapshot() {
+        TestEventCursor cursor = new TestEventCursor();
+        cursor.addRow(new Object[]{1L, 1L, "Event 1", monthMillis + 1000, monthMillis + 2000, 0});
+        LongSparseArray<EventTable> months = new LongSparseArray<>();
+        months.put(monthMillis, EventTable.from(cursor));
+        cursor = new TestEventCursor();
+        cursor.addRow(new Object[]{2L, 1L, "Event 2", nextMonthMillis + 1000,
+                nextMonthMillis + 2000, 0});
+        months.put(nextMonthMillis, EventTable.from(cursor));
+        eventStore.mSnapshot.write(months);
+        eventStore.restoreSnapshot();
+
+        // snapshot should be served without waiting for provider
+        eventStore.query(monthMillis, nextMonthMillis, Collections.<String>emptySet(), callback);
+        ShadowLooper.runUiThreadTasks();
+        assertThat(result.getCount()).isEqualTo(1);
+        ContentObserver monthObserver = mock(ContentObserver.class);
+        result.registerContentObserver(monthObserver);
+
+        // unchanged events from provider should not notify served cursors
+        cursor = new TestEventCursor();
+        cursor.addRow(new Object[]{1L, 1L, "Event 1", monthMillis + 1000, monthMillis + 2000, 0});
+        eventStore.onMonthLoaded(eventStore.mGeneration, monthMillis, cursor);
+        verify(monthObserver, never()).dispatchChange(false, null);
+
+        // changed events from provider should notify served cursors
+        result = null;
+        eventStore.query(nextMonthMillis, CalendarUtils.addMonths(nextMonthMillis, 1),
+                Collections.<String>emptySet(), callback);
+        ShadowLooper.runUiThreadTasks();
+        assertThat(result.getCount()).isEqualTo(1);
+        ContentObserver observer = mock(ContentObserver.class);
+        result.registerContentObserver(observer);
+        eventStore.onMonthLoaded(eventStore.mGeneration, nextMonthMillis, new TestEventCursor());
+        verify(observer).dispatchChange(false, null);
+
+        // served cursors of other months should not be notified
+        verify(monthObserver, never()).dispatchChange(false, null);
+    }
+
+    @Test
+    public void testFailedLoad() {
+        TestEventCursor cursor = new TestEventCursor();
+        cursor.addRow(new Object[]{1L, 1L, "Event 1", monthMillis + 1000, monthMillis + 2000, 0});
+        LongSparseArray<EventTable> months = new LongSparseArray<>();
+        months.put(monthMillis, EventTable.from(cursor));
+        eventStore.mSnapshot.write(months);
+        eventStore.restoreSnapshot();
+        eventStore.query(monthMillis, nextMonthMillis, Collections.<String>emptySet(), callback);
+        ShadowLooper.runUiThreadTasks();
+        ContentObserver observer = mock(ContentObserver.class);
+        result.registerContentObserver(observer);
+
+        // failed reload should keep events from snapshot, in memory and on disk
+        eventStore.onMonthLoaded(eventStore.mGeneration, monthMillis, new EventCursor(null));
+        ShadowLooper.idleMainLooper(EventStore.SNAPSHOT_DELAY_MILLIS);
+        verify(observer, never()).dispatchChange(false, null);
+        assertThat(eventStore.mSnapshot.read().get(monthMillis).mSize).isEqualTo(1);
+        result = null;
+        eventStore.query(monthMillis, nextMonthMillis, Collections.<String>emptySet(), callback);
+        ShadowLooper.runUiThreadTasks();
+        assertThat(result.getCount()).isEqualTo(1);
+
+        // failed load should leave request pending until month is loaded
+        result = null;
+        eventStore.query(nextMonthMillis, CalendarUtils.addMonths(nextMonthMillis, 1),
+                Collections.<String>emptySet(), callback);
+        eventStore.onMonthLoaded(eventStore.mGeneration, nextMonthMillis, new EventCursor(null));
+        assertThat(result).isNull();
+        cursor = new TestEventCursor();
+        cursor.addRow(new Object[]{2L, 1L, "Event 2", nextMonthMillis + 1000,
+                nextMonthMillis + 2000, 0});
+        eventStore.onMonthLoaded(eventStore.mGeneration, nextMonthMillis, cursor);
+        assertThat(result.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testContentChange() {
+        eventStore.query(monthMillis, nextMonthMillis, Collections.<String>emptySet(), callback);
+        int generation = eventStore.mGeneration;
+        eventStore.onMonthLoaded(generation, monthMillis, new TestEventCursor());
+        ContentObserver observer = mock(ContentObserver.class);
+        result.registerContentObserver(observer);
+
+        // events change should notify served cursors
+        RuntimeEnvironment.application.getContentResolver()
+                .notifyChange(CalendarContract.Events.CONTENT_URI, null);
+        ShadowLooper.idleMainLooper(EventStore.CHANGE_DELAY_MILLIS);
+        verify(observer).dispatchChange(false, null);
+
+        // outdated results should be discarded
+        result = null;
+        eventStore.query(monthMillis, nextMonthMillis, Collections.<String>emptySet(), callback);
+        TestEventCursor outdated = new TestEventCursor();
+        eventStore.onMonthLoaded(generation, monthMillis, outdated);
+        assertThat(outdated.isClosed()).isTrue();
+        assertThat(result).isNull();
+        eventStore.onMonthLoaded(eventStore.mGeneration, monthMillis, new TestEventCursor());
+        assertThat(result).isNotNull();
+    }
+
+    @Test
+    public void testCoalesceContentChanges() {
+        eventStore.query(monthMillis, nextMonthMillis, Collections.<String>emptySet(), callback);
+        eventStore.onMonthLoaded(eventStore.mGeneration, monthMillis, new TestEventCursor());
+        ContentObserver observer = mock(ContentObserver.class);
+        result.registerContentObserver(observer);
+        int generation = eventStore.mGeneration;
+
+        // burst of events changes should only be delivered once after delay
+        for (int i = 0; i < 3; i++) {
+            RuntimeEnvironment.application.getContentResolver()
+                    .notifyChange(CalendarContract.Events.CONTENT_URI, null);
+        }
+        verify(observer, never()).dispatchChange(false, null);
+        ShadowLooper.idleMainLooper(EventStore.CHANGE_DELAY_MILLIS);
+        verify(observer).dispatchChange(false, null);
+        assertThat(eventStore.mGeneration).isEqualTo(generation + 1);
+        assertThat(eventStore.getChangeCount()).isEqualTo(3);
+        assertThat(eventStore.getAbsorbedChangeCount()).isEqualTo(2);
+    }
+}
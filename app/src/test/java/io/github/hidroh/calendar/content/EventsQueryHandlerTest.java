@@ -0,0 +1,201 @@
+package io.github.hidroh.calendar.content;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.provider.CalendarContract;
+import android.text.format.DateUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+
+import io.github.hidroh.calendar.CalendarUtils;
+import io.github.hidroh.calendar.CivilDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricGradleTestRunner.class)
+public class EventsQueryHandlerTest {
+    private static final String TABLE = "instances";
+    private static final String RANGE_TABLE = "range_instances";
+    private final TimeZone defaultTimeZone = TimeZone.getDefault();
+    private SQLiteDatabase database;
+
+    @Before
+    public void setUp() {
+        database = SQLiteDatabase.create(null);
+        database.execSQL("CREATE TABLE " + TABLE + " (" +
+                CalendarContract.Instances._ID + " INTEGER PRIMARY KEY, " +
+                CalendarContract.Instances.CALENDAR_ID + " INTEGER, " +
+                CalendarContract.Instances.DELETED + " INTEGER)");
+        // synthetic events: 5 calendars, some deleted
+        for (int i = 1; i <= 50; i++) {
+            ContentValues values = new ContentValues();
+            values.put(CalendarContract.Instances._ID, i);
+            values.put(CalendarContract.Instances.CALENDAR_ID, i % 5 + 1);
+            values.put(CalendarContract.Instances.DELETED, i % 7 == 0 ? 1 : 0);
+            database.insert(TABLE, null, values);
+        }
+    }
+
+    @Test
+    public void testSelectionMatchesLegacySelection() {
+        List<Collection<String>> exclusions = Arrays.<Collection<String>>asList(
+                Collections.<String>emptySet(),
+                Collections.singleton("2"),
+                Arrays.asList("1", "3"),
+                Arrays.asList("1", "2", "4", "5"),
+                Arrays.asList("6", "7")); // non-existent calendars
+        for (Collection<String> excludedCalendarIds : exclusions) {
+            String[] args = EventsQueryHandler.buildSelectionArgs(excludedCalendarIds);
+            assertThat(query(EventsQueryHandler.buildSelection(excludedCalendarIds), args))
+                    .isNotEmpty()
+                    .isEqualTo(query(buildLegacySelection(excludedCalendarIds), args));
+        }
+    }
+
+    @Test
+    public void testSelectionCache() {
+        // selection should be shared between exclusions of same size
+        assertThat(EventsQueryHandler.buildSelection(Arrays.asList("1", "2")))
+                .isSameAs(EventsQueryHandler.buildSelection(Arrays.asList("3", "4")));
+    }
+
+    @Test
+    public void testRange() {
+        TimeZone.setDefault(TimeZone.getTimeZone("GMT+8"));
+        CivilDate.invalidate();
+        long dayMillis = CalendarUtils.today(),
+                utcDayMillis = CalendarUtils.toUtcTimeZone(dayMillis);
+        database.execSQL("CREATE TABLE " + RANGE_TABLE + " (" +
+                CalendarContract.Instances.EVENT_ID + " INTEGER, " +
+                CalendarContract.Instances.BEGIN + " INTEGER, " +
+                CalendarContract.Instances.END + " INTEGER, " +
+                CalendarContract.Instances.ALL_DAY + " INTEGER)");
+        insertInstance(1L, utcDayMillis - DateUtils.DAY_IN_MILLIS, utcDayMillis, true);
+        insertInstance(2L, utcDayMillis, utcDayMillis + DateUtils.DAY_IN_MILLIS, true);
+        insertInstance(3L, utcDayMillis + DateUtils.DAY_IN_MILLIS,
+                utcDayMillis + DateUtils.DAY_IN_MILLIS * 2, true);
+        insertInstance(4L, dayMillis - DateUtils.HOUR_IN_MILLIS, dayMillis, false);
+        insertInstance(5L, dayMillis - DateUtils.HOUR_IN_MILLIS,
+                dayMillis + DateUtils.HOUR_IN_MILLIS, false);
+        insertInstance(6L, dayMillis + DateUtils.DAY_IN_MILLIS,
+                dayMillis + DateUtils.DAY_IN_MILLIS + DateUtils.HOUR_IN_MILLIS, false);
+
+        // only instances of local day, not neighbouring all-day or ending at day start
+        assertThat(queryRange(dayMillis, dayMillis + DateUtils.DAY_IN_MILLIS))
+                .containsExactly(2L, 5L);
+
+        // all-day instance of local day should be included for partial day
+        assertThat(queryRange(dayMillis + DateUtils.HOUR_IN_MILLIS,
+                dayMillis + DateUtils.HOUR_IN_MILLIS * 2))
+                .containsExactly(2L);
+    }
+
+    @Test
+    public void testSnapshot() {
+        MatrixCursor cursor = new MatrixCursor(EventCursor.PROJECTION);
+        cursor.addRow(new Object[]{1L, 2L, "Event 1", 1000L, 2000L, 1});
+        cursor.addRow(new Object[]{3L, 4L, null, 3000L, 4000L, 0});
+
+        // snapshot should have same rows, and source cursor should be released
+        EventCursor snapshot = new EventCursor(EventsQueryHandler.snapshot(cursor));
+        assertThat(cursor.isClosed()).isTrue();
+        assertThat(snapshot.getProjection()).isSameAs(EventCursor.Projection.ALL);
+        assertThat(snapshot.getCount()).isEqualTo(2);
+        assertThat(snapshot.moveToFirst()).isTrue();
+        assertThat(snapshot.getId()).isEqualTo(1L);
+        assertThat(snapshot.getCalendarId()).isEqualTo(2L);
+        assertThat(snapshot.getTitle()).isEqualTo("Event 1");
+        assertThat(snapshot.getDateTimeStart()).isEqualTo(1000L);
+        assertThat(snapshot.getDateTimeEnd()).isEqualTo(2000L);
+        assertThat(snapshot.getAllDay()).isTrue();
+        assertThat(snapshot.moveToNext()).isTrue();
+        assertThat(snapshot.getTitle()).isNull();
+        assertThat(snapshot.getAllDay()).isFalse();
+
+        // snapshot should be reused as is
+        EventTable table = EventTable.from(snapshot);
+        assertThat(EventTable.from(snapshot)).isSameAs(table);
+
+        // failed query should not give any snapshot
+        assertThat(EventsQueryHandler.snapshot(null)).isNull();
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultTimeZone);
+        CivilDate.invalidate();
+        database.close();
+    }
+
+    private void insertInstance(long eventId, long begin, long end, boolean allDay) {
+        ContentValues values = new ContentValues();
+        values.put(CalendarContract.Instances.EVENT_ID, eventId);
+        values.put(CalendarContract.Instances.BEGIN, begin);
+        values.put(CalendarContract.Instances.END, end);
+        values.put(CalendarContract.Instances.ALL_DAY, allDay ? 1 : 0);
+        database.insert(RANGE_TABLE, null, values);
+    }
+
+    private List<Long> queryRange(long startTimeMillis, long endTimeMillis) {
+        // same range selection as Calendar Provider, which is inclusive
+        List<String> segments = EventsQueryHandler.buildUri(startTimeMillis, endTimeMillis)
+                .getPathSegments();
+        Cursor cursor = database.query(RANGE_TABLE, new String[]{
+                        CalendarContract.Instances.EVENT_ID,
+                        CalendarContract.Instances.BEGIN,
+                        CalendarContract.Instances.END,
+                        CalendarContract.Instances.ALL_DAY},
+                CalendarContract.Instances.BEGIN + "<=? AND " +
+                        CalendarContract.Instances.END + ">=?",
+                new String[]{segments.get(segments.size() - 1),
+                        segments.get(segments.size() - 2)},
+                null, null, CalendarContract.Instances.EVENT_ID);
+        EventCursor eventCursor = new EventCursor(
+                new RangeCursor(cursor, startTimeMillis, endTimeMillis));
+        List<Long> ids = new ArrayList<>();
+        while (eventCursor.moveToNext()) {
+            ids.add(eventCursor.getId());
+        }
+        eventCursor.close();
+        return ids;
+    }
+
+    private List<Long> query(String selection, String[] selectionArgs) {
+        Cursor cursor = database.query(TABLE, new String[]{CalendarContract.Instances._ID},
+                selection, selectionArgs, null, null, CalendarContract.Instances._ID);
+        List<Long> ids = new ArrayList<>();
+        while (cursor.moveToNext()) {
+            ids.add(cursor.getLong(0));
+        }
+        cursor.close();
+        return ids;
+    }
+
+    private String buildLegacySelection(Collection<String> excludedCalendarIds) {
+        StringBuilder sb = new StringBuilder(CalendarContract.Instances.DELETED + "=?");
+        if (!excludedCalendarIds.isEmpty()) {
+            sb.append(" AND (");
+            for (int i = 0; i < excludedCalendarIds.size(); i++) {
+                if (i > 0) {
+                    sb.append(" AND ");
+                }
+                sb.append(CalendarContract.Instances.CALENDAR_ID + "!=?");
+            }
+            sb.append(")");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,106 @@
+package io.github.hidroh.calendar.content;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class QueryExecutorTest {
+    private final Object owner = new Object();
+    private final CountDownLatch blocked = new CountDownLatch(1);
+    private final CountDownLatch released = new CountDownLatch(1);
+    private final List<Object> executed = Collections.synchronizedList(new ArrayList<Object>());
+    private QueryExecutor executor;
+    private CountDownLatch started;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        executor = new QueryExecutor();
+        // occupy all threads so that later tasks are queued,
+        // then only one thread can be released to run queued tasks one by one
+        started = new CountDownLatch(QueryExecutor.POOL_SIZE);
+        executor.execute(new BlockingTask(released));
+        for (int i = 1; i < QueryExecutor.POOL_SIZE; i++) {
+            executor.execute(new BlockingTask(blocked));
+        }
+        assertThat(started.await(1, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void testPriority() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(4);
+        executor.execute(new RecordingTask(1L, EventsQueryHandler.PRIORITY_PREFETCH, done));
+        executor.execute(new RecordingTask(2L, EventsQueryHandler.PRIORITY_VISIBLE, done));
+        executor.execute(new RecordingTask(3L, EventsQueryHandler.PRIORITY_PREFETCH, done));
+        executor.execute(new RecordingTask(4L, EventsQueryHandler.PRIORITY_VISIBLE, done));
+        released.countDown();
+        assertThat(done.await(1, TimeUnit.SECONDS)).isTrue();
+        // visible before prefetch, each in order of submission
+        assertThat(executed).containsExactly(2L, 4L, 1L, 3L);
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        executor.execute(new RecordingTask(1L, EventsQueryHandler.PRIORITY_PREFETCH, null));
+        executor.execute(new RecordingTask(2L, EventsQueryHandler.PRIORITY_VISIBLE, done));
+
+        // only queued task of matching owner, token and cookie should be cancelled
+        assertThat(executor.cancel(new Object(), 0, 1L)).isFalse();
+        assertThat(executor.cancel(owner, 1, 1L)).isFalse();
+        assertThat(executor.cancel(owner, 0, 1L)).isTrue();
+        assertThat(executor.cancel(owner, 0, 1L)).isFalse();
+        released.countDown();
+        assertThat(done.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(executed).containsExactly(2L);
+    }
+
+    @After
+    public void tearDown() {
+        released.countDown();
+        blocked.countDown();
+    }
+
+    private class BlockingTask extends QueryExecutor.Task {
+        private final CountDownLatch latch;
+
+        BlockingTask(CountDownLatch latch) {
+            super(owner, -1, null, EventsQueryHandler.PRIORITY_VISIBLE);
+            this.latch = latch;
+        }
+
+        @Override
+        public void run() {
+            started.countDown();
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private class RecordingTask extends QueryExecutor.Task {
+        private final CountDownLatch done;
+
+        RecordingTask(Object cookie, int priority, CountDownLatch done) {
+            super(owner, 0, cookie, priority);
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            executed.add(mCookie);
+            if (done != null) {
+                done.countDown();
+            }
+        }
+    }
+}
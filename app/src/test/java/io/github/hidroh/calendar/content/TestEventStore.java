@@ -0,0 +1,10 @@
+package io.github.hidroh.calendar.content;
+
+import android.content.Context;
+
+public class TestEventStore {
+    public static void completeQuery(Context context, long monthMillis, EventCursor cursor) {
+        EventStore eventStore = EventStore.getInstance(context);
+        eventStore.mHandler.handleQueryComplete(eventStore.mGeneration, monthMillis, cursor);
+    }
+}
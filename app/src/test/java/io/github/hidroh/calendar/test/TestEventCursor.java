@@ -12,6 +12,10 @@ public class TestEventCursor extends EventCursor {
         super(new MatrixCursor(EventCursor.PROJECTION));
     }
 
+    public TestEventCursor(EventCursor.Projection projection) {
+        super(new MatrixCursor(projection.getColumnNames()));
+    }
+
     public void addRow(Object[] columnValues) {
         ((MatrixCursor) getWrappedCursor()).addRow(columnValues);
     }
@@ -1,22 +1,22 @@
 package io.github.hidroh.calendar.test.assertions;
 
-import android.text.SpannableString;
+import android.text.Spanned;
 
 import org.assertj.core.api.AbstractCharSequenceAssert;
 import org.assertj.core.api.Assertions;
 
-public class SpannableStringAssert
-        extends AbstractCharSequenceAssert<SpannableStringAssert, SpannableString> {
+public class SpannedAssert
+        extends AbstractCharSequenceAssert<SpannedAssert, Spanned> {
 
-    public static SpannableStringAssert assertThat(SpannableString actual) {
-        return new SpannableStringAssert(actual, SpannableStringAssert.class);
+    public static SpannedAssert assertThat(Spanned actual) {
+        return new SpannedAssert(actual, SpannedAssert.class);
     }
 
-    protected SpannableStringAssert(SpannableString actual, Class<?> selfType) {
+    protected SpannedAssert(Spanned actual, Class<?> selfType) {
         super(actual, selfType);
     }
 
-    public SpannableStringAssert hasSpan(Class<?> type) {
+    public SpannedAssert hasSpan(Class<?> type) {
         Object[] span = actual.getSpans(0, actual.length(), type);
         Assertions.assertThat(span)
                 .overridingErrorMessage("Expect to have <%s> span but did not have", type.getName())
@@ -24,7 +24,7 @@ public class SpannableStringAssert
         return this;
     }
 
-    public SpannableStringAssert doesNotHaveSpan(Class<?> type) {
+    public SpannedAssert doesNotHaveSpan(Class<?> type) {
         Object[] span = actual.getSpans(0, actual.length(), type);
         Assertions.assertThat(span)
                 .overridingErrorMessage("Expect not to have <%s> span but had", type.getName())
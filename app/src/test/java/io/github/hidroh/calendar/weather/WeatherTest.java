@@ -0,0 +1,47 @@
+package io.github.hidroh.calendar.weather;
+
+import android.graphics.Color;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import io.github.hidroh.calendar.R;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricGradleTestRunner.class)
+public class WeatherTest {
+    @Test
+    public void testIcon() {
+        Weather weather = new Weather(new String[]{"rain", "50", "", "", "tornado", "40"},
+                new String[0]);
+        assertThat(weather.tomorrow).isNull();
+        assertThat(weather.today.morning.getIcon(RuntimeEnvironment.application, Color.BLACK))
+                .isNotNull();
+        assertThat(weather.today.afternoon.getIcon(RuntimeEnvironment.application, Color.BLACK))
+                .isNull();
+
+        // cached icon should still be a new drawable for each call
+        assertThat(weather.today.morning.getIcon(RuntimeEnvironment.application, Color.BLACK))
+                .isNotNull()
+                .isNotSameAs(weather.today.morning.getIcon(RuntimeEnvironment.application,
+                        Color.BLACK));
+        assertThat(weather.today.night.getIcon(RuntimeEnvironment.application, Color.WHITE))
+                .isNotNull();
+    }
+
+    @Test
+    public void testDrawableResId() {
+        assertThat(Weather.WeatherInfo.getDrawableResId("clear-day"))
+                .isEqualTo(R.drawable.ic_clear_day_24dp);
+        assertThat(Weather.WeatherInfo.getDrawableResId("partly-cloudy-night"))
+                .isEqualTo(R.drawable.ic_partly_cloudy_night_24dp);
+        assertThat(Weather.WeatherInfo.getDrawableResId("wind"))
+                .isEqualTo(R.drawable.ic_wind_24dp);
+        // unknown condition should fall back to cloudy
+        assertThat(Weather.WeatherInfo.getDrawableResId("tornado"))
+                .isEqualTo(R.drawable.ic_cloudy_24dp);
+    }
+}
@@ -5,6 +5,8 @@ import android.os.Bundle;
 import android.os.Parcelable;
 import android.support.annotation.Nullable;
 import android.support.v4.util.LongSparseArray;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
@@ -36,7 +38,9 @@ import io.github.hidroh.calendar.weather.Weather;
 
 import static org.assertj.android.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyObject;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -98,6 +102,21 @@ public class AgendaViewTest {
                 lastDayMillis + DateUtils.DAY_IN_MILLIS * AgendaAdapter.BLOCK_SIZE);
     }
 
+    @Test
+    public void testTimeStringCache() {
+        long timeMillis = todayMillis + 9 * DateUtils.HOUR_IN_MILLIS;
+        String timeString = AgendaAdapter.getTimeString(activity, timeMillis, false);
+        assertThat(timeString).isEqualTo(CalendarUtils.toTimeString(activity, timeMillis));
+
+        // same minute of day should only be formatted once
+        assertThat(AgendaAdapter.getTimeString(activity,
+                timeMillis + 30 * DateUtils.SECOND_IN_MILLIS, false)).isSameAs(timeString);
+        assertThat(AgendaAdapter.getTimeString(activity, timeMillis, true))
+                .isEqualTo(activity.getString(R.string.end_time, timeString));
+        assertThat(AgendaAdapter.getTimeString(activity,
+                timeMillis + DateUtils.MINUTE_IN_MILLIS, false)).isNotEqualTo(timeString);
+    }
+
     @Test
     public void testPruneUponPrepending() {
         assertThat(adapter.getItemCount()).isLessThanOrEqualTo(AgendaAdapter.MAX_SIZE * 2);
@@ -122,6 +141,24 @@ public class AgendaViewTest {
         assertThat(adapter.getItemCount()).isLessThanOrEqualTo(AgendaAdapter.MAX_SIZE * 2);
     }
 
+    @Test
+    public void testPauseLoading() {
+        adapter.pauseLoading();
+        adapter.prepend();
+
+        // days bound while loading is paused should not load events
+        createBindViewHolder(0);
+        AgendaAdapter.EventGroup group = (AgendaAdapter.EventGroup) adapter.getAdapterItem(0);
+        assertThat(group.mBlock).isNull();
+        assertThat(group.mDeferred).isTrue();
+
+        // skipped days should load events once resumed
+        adapter.resumeLoading();
+        assertThat(group.mDeferred).isFalse();
+        createBindViewHolder(0);
+        assertThat(group.mBlock).isNotNull();
+    }
+
     @Test
     public void testChangeSelectedDay() {
         long tomorrowMillis = todayMillis + DateUtils.DAY_IN_MILLIS;
@@ -234,6 +271,93 @@ public class AgendaViewTest {
         assertThat(cursor).isClosed();
     }
 
+    @Test
+    public void testBindCursorPositions() {
+        int count = adapter.getItemCount();
+        int todayPosition = adapter.getPosition(todayMillis);
+        TestEventCursor cursor = new TestEventCursor();
+        cursor.addRow(new Object[]{1L, 1L, "Event 1", todayMillis + 1000, todayMillis + 1000, 0});
+        cursor.addRow(new Object[]{2L, 1L, "Event 2", todayMillis + 2000, todayMillis + 2000, 0});
+        adapter.bindEvents(todayMillis, cursor);
+
+        // placeholder replaced by first event, second event inserted
+        assertThat(adapter.getItemCount()).isEqualTo(count + 1);
+        assertThat(adapter.getPosition(todayMillis)).isEqualTo(todayPosition);
+        assertThat(adapter.getPosition(todayMillis + DateUtils.DAY_IN_MILLIS))
+                .isEqualTo(todayPosition + 3);
+        assertThat((TextView) createBindViewHolder(todayPosition + 2).itemView
+                .findViewById(R.id.text_view_title))
+                .hasTextString("Event 2");
+        assertHasDate(createBindViewHolder(todayPosition + 3),
+                todayMillis + DateUtils.DAY_IN_MILLIS);
+    }
+
+    @Test
+    public void testBindRange() {
+        int count = adapter.getItemCount();
+        int todayPosition = adapter.getPosition(todayMillis);
+        long tomorrowMillis = todayMillis + DateUtils.DAY_IN_MILLIS;
+        TestEventCursor cursor = new TestEventCursor();
+        cursor.addRow(new Object[]{1L, 1L, "Event 1", todayMillis + 1000, tomorrowMillis + 1000, 0});
+        cursor.addRow(new Object[]{2L, 1L, "Event 2", tomorrowMillis + 2000, tomorrowMillis + 2000, 0});
+        adapter.bindEvents(todayMillis, tomorrowMillis + DateUtils.DAY_IN_MILLIS, cursor);
+
+        // multi-day event split into both days, placeholders replaced, one event inserted
+        assertThat(adapter.getItemCount()).isEqualTo(count + 1);
+        assertThat(adapter.getPosition(tomorrowMillis)).isEqualTo(todayPosition + 2);
+        assertThat((TextView) createBindViewHolder(todayPosition + 1).itemView
+                .findViewById(R.id.text_view_title))
+                .hasTextString("Event 1");
+        assertThat((TextView) createBindViewHolder(todayPosition + 3).itemView
+                .findViewById(R.id.text_view_title))
+                .hasTextString("Event 1");
+        assertThat((TextView) createBindViewHolder(todayPosition + 4).itemView
+                .findViewById(R.id.text_view_title))
+                .hasTextString("Event 2");
+
+        // shared cursor should only be closed once all its days are deactivated
+        assertThat(cursor).isNotClosed();
+        adapter.deactivate();
+        assertThat(cursor).isClosed();
+    }
+
+    @Test
+    public void testBindRangeMultiDay() {
+        int todayPosition = adapter.getPosition(todayMillis);
+        long tomorrowMillis = todayMillis + DateUtils.DAY_IN_MILLIS,
+                endMillis = tomorrowMillis + DateUtils.DAY_IN_MILLIS * 2;
+        TestEventCursor cursor = new TestEventCursor();
+        cursor.addRow(new Object[]{1L, 1L, "Event 1", todayMillis - 1000,
+                tomorrowMillis + DateUtils.DAY_IN_MILLIS, 0}); // from before range to day 3 start
+        cursor.addRow(new Object[]{2L, 1L, "Event 2", todayMillis - 2000, todayMillis, 0});
+        cursor.addRow(new Object[]{3L, 1L, "Event 3", endMillis, endMillis + 1000, 0});
+        adapter.bindEvents(todayMillis, endMillis, cursor);
+
+        // event should be in every day it falls on, events outside of range skipped
+        assertThat(adapter.getPosition(tomorrowMillis)).isEqualTo(todayPosition + 2);
+        assertThat(adapter.getPosition(tomorrowMillis + DateUtils.DAY_IN_MILLIS))
+                .isEqualTo(todayPosition + 4);
+        assertThat((TextView) createBindViewHolder(todayPosition + 1).itemView
+                .findViewById(R.id.text_view_title))
+                .hasTextString("Event 1");
+        assertThat((TextView) createBindViewHolder(todayPosition + 3).itemView
+                .findViewById(R.id.text_view_title))
+                .hasTextString("Event 1");
+        assertThat((TextView) createBindViewHolder(todayPosition + 5).itemView
+                .findViewById(R.id.text_view_title))
+                .hasTextString(R.string.no_event);
+        adapter.deactivate();
+    }
+
+    @Test
+    public void testBindPrunedRange() {
+        // events for days no longer in adapter should be discarded
+        TestEventCursor cursor = new TestEventCursor();
+        assertThat(adapter.bindEvents(firstDayMillis - DateUtils.DAY_IN_MILLIS * 2,
+                firstDayMillis - DateUtils.DAY_IN_MILLIS, cursor)).isFalse();
+        assertThat(cursor).isClosed();
+    }
+
     @Test
     public void testCursorContentChange() {
         // initial state
@@ -277,6 +401,59 @@ public class AgendaViewTest {
         assertHasDate(createBindViewHolder(2), groupTime + DateUtils.DAY_IN_MILLIS);
     }
 
+    @Test
+    public void testEventItemDiff() {
+        TestEventCursor cursor = new TestEventCursor();
+        cursor.addRow(new Object[]{1L, 1L, "Event 1", todayMillis + 1000, todayMillis + 1000, 0});
+        cursor.addRow(new Object[]{2L, 1L, "Event 2", todayMillis + 2000, todayMillis + 2000, 0});
+        cursor.addRow(new Object[]{3L, 1L, "Event 3", todayMillis + 3000, todayMillis + 3000, 0});
+        AgendaAdapter.EventGroup group = new AgendaAdapter.EventGroup(todayMillis);
+        AgendaAdapter.EventItem[] lastItems = group.readItems(new EventCursor(cursor));
+        TestEventCursor updatedCursor = new TestEventCursor();
+        updatedCursor.addRow(new Object[]{1L, 1L, "Event 1", todayMillis + 1000, todayMillis + 1000, 0});
+        updatedCursor.addRow(new Object[]{2L, 1L, "Edited", todayMillis + 2000, todayMillis + 2000, 0});
+        updatedCursor.addRow(new Object[]{3L, 1L, "Event 3", todayMillis + 3000, todayMillis + 3000, 0});
+        AgendaAdapter.EventItem[] items = group.readItems(new EventCursor(updatedCursor));
+
+        // editing an event should only change its row
+        ListUpdateCallback callback = mock(ListUpdateCallback.class);
+        DiffUtil.calculateDiff(new AgendaAdapter.EventItemDiff(lastItems, items))
+                .dispatchUpdatesTo(callback);
+        verify(callback).onChanged(1, 1, null);
+        verify(callback, never()).onInserted(anyInt(), anyInt());
+        verify(callback, never()).onRemoved(anyInt(), anyInt());
+        verify(callback, never()).onMoved(anyInt(), anyInt());
+
+        // binding events to empty group should replace placeholder
+        callback = mock(ListUpdateCallback.class);
+        DiffUtil.calculateDiff(new AgendaAdapter.EventItemDiff(
+                group.readItems(new EventCursor(new TestEventCursor())), items))
+                .dispatchUpdatesTo(callback);
+        verify(callback).onRemoved(0, 1);
+        verify(callback).onInserted(0, 3);
+        verify(callback, never()).onChanged(anyInt(), anyInt(), anyObject());
+    }
+
+    @Test
+    public void testEventItemDiffRecurring() {
+        TestEventCursor cursor = new TestEventCursor();
+        cursor.addRow(new Object[]{1L, 1L, "Event 1", todayMillis + 1000, todayMillis + 1000, 0});
+        cursor.addRow(new Object[]{1L, 1L, "Event 1", todayMillis + 2000, todayMillis + 2000, 0});
+        AgendaAdapter.EventGroup group = new AgendaAdapter.EventGroup(todayMillis);
+        AgendaAdapter.EventItem[] lastItems = group.readItems(new EventCursor(cursor));
+        TestEventCursor updatedCursor = new TestEventCursor();
+        updatedCursor.addRow(new Object[]{1L, 1L, "Event 1", todayMillis + 2000, todayMillis + 2000, 0});
+        AgendaAdapter.EventItem[] items = group.readItems(new EventCursor(updatedCursor));
+
+        // removing an instance of recurring event should only remove its row
+        ListUpdateCallback callback = mock(ListUpdateCallback.class);
+        DiffUtil.calculateDiff(new AgendaAdapter.EventItemDiff(lastItems, items))
+                .dispatchUpdatesTo(callback);
+        verify(callback).onRemoved(0, 1);
+        verify(callback, never()).onChanged(anyInt(), anyInt(), anyObject());
+        verify(callback, never()).onInserted(anyInt(), anyInt());
+    }
+
     @Test
     public void testStateRestoration() {
         agendaView.smoothScrollToPosition(0);
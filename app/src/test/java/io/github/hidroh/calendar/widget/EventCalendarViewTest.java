@@ -230,8 +230,8 @@ public class EventCalendarViewTest {
     }
 
     private long getMonthAt(int position) {
-        return ((MonthViewPagerAdapter) calendarView.getAdapter())
-                .mViews.get(position).mMonthMillis;
+        return ((MonthView) ((MonthViewPagerAdapter) calendarView.getAdapter())
+                .mViews.get(position)).mMonthMillis;
     }
 
     private long getSelectedDay() {
@@ -0,0 +1,73 @@
+package io.github.hidroh.calendar.widget;
+
+import android.content.Intent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+import io.github.hidroh.calendar.CivilDate;
+import io.github.hidroh.calendar.TimeZoneReceiver;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(RobolectricGradleTestRunner.class)
+public class FormatCacheTest {
+    private final FormatCache cache = new FormatCache(2);
+    private Locale defaultLocale;
+    private TimeZone defaultTimeZone;
+
+    @Before
+    public void setUp() {
+        defaultLocale = Locale.getDefault();
+        defaultTimeZone = TimeZone.getDefault();
+    }
+
+    @Test
+    public void testGet() {
+        assertThat(cache.get(1L)).isNull();
+        cache.put(1L, "1");
+        cache.put(2L, "2");
+        assertThat(cache.get(1L)).isEqualTo("1");
+
+        // least recently used string should be dropped once full
+        cache.put(3L, "3");
+        assertThat(cache.get(1L)).isEqualTo("1");
+        assertThat(cache.get(2L)).isNull();
+    }
+
+    @Test
+    public void testLocaleChange() {
+        cache.put(1L, "1");
+        assertThat(cache.get(1L)).isEqualTo("1");
+        Locale.setDefault(Locale.FRANCE.equals(defaultLocale) ? Locale.US : Locale.FRANCE);
+        new TimeZoneReceiver().onReceive(RuntimeEnvironment.application,
+                new Intent(Intent.ACTION_LOCALE_CHANGED));
+        assertThat(cache.get(1L)).isNull();
+    }
+
+    @Test
+    public void testTimeZoneChange() {
+        TimeZone.setDefault(TimeZone.getTimeZone("GMT+10"));
+        CivilDate.invalidate();
+        cache.put(1L, "1");
+        assertThat(cache.get(1L)).isEqualTo("1");
+        TimeZone.setDefault(TimeZone.getTimeZone("GMT-10"));
+        new TimeZoneReceiver().onReceive(RuntimeEnvironment.application,
+                new Intent(Intent.ACTION_TIMEZONE_CHANGED));
+        assertThat(cache.get(1L)).isNull();
+    }
+
+    @After
+    public void tearDown() {
+        Locale.setDefault(defaultLocale);
+        TimeZone.setDefault(defaultTimeZone);
+        CivilDate.invalidate();
+    }
+}
@@ -0,0 +1,159 @@
+package io.github.hidroh.calendar.widget;
+
+import android.graphics.Rect;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+import android.support.v4.widget.ExploreByTouchHelper;
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import io.github.hidroh.calendar.CalendarUtils;
+import io.github.hidroh.calendar.CivilDate;
+import io.github.hidroh.calendar.R;
+import io.github.hidroh.calendar.test.TestEventCursor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@RunWith(RobolectricGradleTestRunner.class)
+public class MonthGridViewTest {
+    private static final int CELL_WIDTH = 100;
+    private MonthGridView monthView;
+    private int cellHeight;
+
+    @Before
+    public void setUp() {
+        RuntimeEnvironment.application.setTheme(R.style.AppTheme);
+        monthView = new MonthGridView(RuntimeEnvironment.application);
+        monthView.setCalendar(createDayMillis(2016, Calendar.MARCH, 1));
+        monthView.measure(
+                View.MeasureSpec.makeMeasureSpec(CELL_WIDTH * 7, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        monthView.layout(0, 0, monthView.getMeasuredWidth(), monthView.getMeasuredHeight());
+        // header row + 5 weeks, with 2 carried days from Feb
+        cellHeight = monthView.getMeasuredHeight() / 6;
+        assertThat(cellHeight).isPositive();
+    }
+
+    @Test
+    public void testDaySelectionChange() {
+        MonthView.OnDateChangeListener listener = mock(MonthView.OnDateChangeListener.class);
+        monthView.setOnDateChangeListener(listener);
+
+        // new selection inside current month, not triggered by users
+        monthView.setSelectedDay(createDayMillis(2016, Calendar.MARCH, 1));
+        assertThat(monthView.mSelectedIndex).isEqualTo(0);
+        verify(listener, never()).onSelectedDayChange(anyLong());
+
+        // new selection outside current month, not triggered by users
+        monthView.setSelectedDay(createDayMillis(2016, Calendar.APRIL, 1));
+        assertThat(monthView.mSelectedIndex).isEqualTo(-1);
+        verify(listener, never()).onSelectedDayChange(anyLong());
+
+        // tapping header or carried day should not change selection
+        tap(0, 0);
+        tap(0, 1); // carried over from Feb
+        assertThat(monthView.mSelectedIndex).isEqualTo(-1);
+        verify(listener, never()).onSelectedDayChange(anyLong());
+
+        // change selection via UI interaction, triggered by users
+        tap(3, 1); // 02-March-2016
+        assertThat(monthView.mSelectedIndex).isEqualTo(1);
+        verify(listener).onSelectedDayChange(anyLong());
+    }
+
+    @Test
+    public void testPressedDay() {
+        float x = CELL_WIDTH * 3 + CELL_WIDTH / 2, y = cellHeight + cellHeight / 2;
+        monthView.onTouchEvent(MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, x, y, 0));
+        assertThat(monthView.mPressedIndex).isEqualTo(1); // 02-March-2016
+
+        // moving out of pressed day should release it
+        monthView.onTouchEvent(MotionEvent.obtain(0, 0, MotionEvent.ACTION_MOVE,
+                x + CELL_WIDTH, y, 0));
+        assertThat(monthView.mPressedIndex).isEqualTo(-1);
+        monthView.onTouchEvent(MotionEvent.obtain(0, 0, MotionEvent.ACTION_UP, x, y, 0));
+        assertThat(monthView.mSelectedIndex).isEqualTo(-1);
+    }
+
+    @Test
+    public void testAccessibility() {
+        MonthView.OnDateChangeListener listener = mock(MonthView.OnDateChangeListener.class);
+        monthView.setOnDateChangeListener(listener);
+        MonthGridView.DayTouchHelper helper = monthView.mTouchHelper;
+
+        // one virtual view per day, header and carried days excluded
+        List<Integer> virtualViewIds = new ArrayList<>();
+        helper.getVisibleVirtualViews(virtualViewIds);
+        assertThat(virtualViewIds).hasSize(31);
+        assertThat(helper.getVirtualViewAt(CELL_WIDTH / 2, cellHeight / 2))
+                .isEqualTo(ExploreByTouchHelper.INVALID_ID);
+        assertThat(helper.getVirtualViewAt(CELL_WIDTH / 2, cellHeight * 3 / 2))
+                .isEqualTo(ExploreByTouchHelper.INVALID_ID);
+        assertThat(helper.getVirtualViewAt(CELL_WIDTH * 7 / 2, cellHeight * 3 / 2))
+                .isEqualTo(1); // 02-March-2016
+
+        // virtual view should describe and bound its day
+        long day2 = new GregorianCalendar(2016, Calendar.MARCH, 2).getTimeInMillis();
+        AccessibilityNodeInfoCompat node = AccessibilityNodeInfoCompat.obtain();
+        helper.onPopulateNodeForVirtualView(1, node);
+        assertThat(node.getContentDescription().toString())
+                .isEqualTo(CalendarUtils.toDayString(RuntimeEnvironment.application, day2));
+        Rect bounds = new Rect();
+        node.getBoundsInParent(bounds);
+        assertThat(bounds).isEqualTo(
+                new Rect(CELL_WIDTH * 3, cellHeight, CELL_WIDTH * 4, cellHeight * 2));
+
+        // clicking virtual view should select its day
+        assertThat(helper.onPerformActionForVirtualView(1,
+                AccessibilityNodeInfoCompat.ACTION_CLICK, null)).isTrue();
+        assertThat(monthView.mSelectedIndex).isEqualTo(1);
+        verify(listener).onSelectedDayChange(eq(day2));
+    }
+
+    @Test
+    public void testSwapCursor() {
+        TimeZone defaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        CivilDate.invalidate();
+        long day14 = createDayMillis(2016, Calendar.MARCH, 14),
+                day17 = createDayMillis(2016, Calendar.MARCH, 17);
+        TestEventCursor cursor = new TestEventCursor();
+        cursor.addRow(new Object[]{1L, 1L, "Event 1", day14, day17, 0}); // multi day
+        monthView.swapCursor(cursor);
+        assertThat(monthView.mEvents).isEqualTo(1 << 13 | 1 << 14 | 1 << 15 | 1 << 16);
+
+        // changing month should clear events
+        monthView.setCalendar(createDayMillis(2016, Calendar.APRIL, 1));
+        assertThat(monthView.mEvents).isZero();
+        TimeZone.setDefault(defaultTimeZone);
+        CivilDate.invalidate();
+    }
+
+    private void tap(int column, int row) {
+        float x = CELL_WIDTH * column + CELL_WIDTH / 2, y = cellHeight * row + cellHeight / 2;
+        monthView.onTouchEvent(MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, x, y, 0));
+        monthView.onTouchEvent(MotionEvent.obtain(0, 0, MotionEvent.ACTION_UP, x, y, 0));
+    }
+
+    private long createDayMillis(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(year, month, day, 0, 0, 0);
+        return calendar.getTimeInMillis();
+    }
+}
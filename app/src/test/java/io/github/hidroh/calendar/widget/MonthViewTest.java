@@ -5,7 +5,8 @@ import android.os.Bundle;
 import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.RecyclerView;
-import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.SpannedString;
 import android.view.ViewGroup;
 import android.widget.FrameLayout;
 import android.widget.TextView;
@@ -25,13 +26,14 @@ import java.util.Calendar;
 import java.util.TimeZone;
 
 import io.github.hidroh.calendar.CalendarUtils;
+import io.github.hidroh.calendar.CivilDate;
 import io.github.hidroh.calendar.R;
 import io.github.hidroh.calendar.test.TestEventCursor;
 import io.github.hidroh.calendar.test.shadows.ShadowViewHolder;
 import io.github.hidroh.calendar.text.style.CircleSpan;
 import io.github.hidroh.calendar.text.style.UnderDotSpan;
 
-import static io.github.hidroh.calendar.test.assertions.SpannableStringAssert.assertThat;
+import static io.github.hidroh.calendar.test.assertions.SpannedAssert.assertThat;
 import static org.assertj.android.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.anyLong;
@@ -117,20 +119,21 @@ public class MonthViewTest {
         // initial state
         CharSequence actual = ((TextView) createBindViewHolder(10).itemView)
                 .getText(); // 02-March-2016
-        assertThat(actual).isInstanceOf(SpannableString.class);
-        assertThat((SpannableString) actual).doesNotHaveSpan(CircleSpan.class);
+        assertThat(actual).isInstanceOf(SpannedString.class);
+        assertThat((Spanned) actual).doesNotHaveSpan(CircleSpan.class);
 
         // selecting day should circle it
         monthView.setSelectedDay(createDayMillis(2016, Calendar.MARCH, 2));
         actual = ((TextView) createBindViewHolder(10).itemView).getText(); // 02-March-2016
-        assertThat(actual).isInstanceOf(SpannableString.class);
-        assertThat((SpannableString) actual).hasSpan(CircleSpan.class);
+        assertThat(actual).isInstanceOf(SpannedString.class);
+        assertThat((Spanned) actual).hasSpan(CircleSpan.class);
     }
 
     @Test
     public void testSwapCursor() {
         TimeZone defaultTimeZone = TimeZone.getDefault();
         TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        CivilDate.invalidate();
         TestEventCursor cursor = new TestEventCursor();
         long day14 = createDayMillis(2016, Calendar.MARCH, 14),
                 day15 = createDayMillis(2016, Calendar.MARCH, 15),
@@ -142,28 +145,25 @@ public class MonthViewTest {
         cursor.addRow(new Object[]{1L, 1L, "Event 1", day20, day21, 1}); // all day
         monthView.swapCursor(cursor);
         assertThat(adapter.mEvents)
-                .hasSize(5)
-                .contains(13, 14, 15, 16, 19);
+                .isEqualTo(1 << 13 | 1 << 14 | 1 << 15 | 1 << 16 | 1 << 19);
 
         // swapping the same cursor should not alter bound events
         monthView.swapCursor(cursor);
         assertThat(adapter.mEvents)
-                .hasSize(5)
-                .contains(13, 14, 15, 16, 19);
+                .isEqualTo(1 << 13 | 1 << 14 | 1 << 15 | 1 << 16 | 1 << 19);
 
         // swapping new cursor should rebind existing events
         TestEventCursor updatedCursor = new TestEventCursor();
         updatedCursor.addRow(new Object[]{1L, 1L, "Event 1", day20, day21, 1}); // all day
         monthView.swapCursor(updatedCursor);
-        assertThat(adapter.mEvents)
-                .hasSize(1)
-                .contains(19);
+        assertThat(adapter.mEvents).isEqualTo(1 << 19);
 
         // swapping empty cursor should clear all existing events
         TestEventCursor emptyCursor = new TestEventCursor();
         monthView.swapCursor(emptyCursor);
-        assertThat(adapter.mEvents).isEmpty();
+        assertThat(adapter.mEvents).isZero();
         TimeZone.setDefault(defaultTimeZone);
+        CivilDate.invalidate();
     }
 
     @Test
@@ -171,8 +171,8 @@ public class MonthViewTest {
         // initial state
         CharSequence actual = ((TextView) createBindViewHolder(10).itemView)
                 .getText(); // 02-March-2016
-        assertThat(actual).isInstanceOf(SpannableString.class);
-        assertThat((SpannableString) actual).doesNotHaveSpan(UnderDotSpan.class);
+        assertThat(actual).isInstanceOf(SpannedString.class);
+        assertThat((Spanned) actual).doesNotHaveSpan(UnderDotSpan.class);
 
         // swapping cursor should decorate it
         TestEventCursor cursor = new TestEventCursor();
@@ -180,8 +180,8 @@ public class MonthViewTest {
         cursor.addRow(new Object[]{1L, 1L, "Event 1", day2, day2, 0});
         monthView.swapCursor(cursor);
         actual = ((TextView) createBindViewHolder(10).itemView).getText(); // 02-March-2016
-        assertThat(actual).isInstanceOf(SpannableString.class);
-        assertThat((SpannableString) actual).hasSpan(UnderDotSpan.class);
+        assertThat(actual).isInstanceOf(SpannedString.class);
+        assertThat((Spanned) actual).hasSpan(UnderDotSpan.class);
     }
 
     @After
@@ -0,0 +1,81 @@
+package io.github.hidroh.calendar;
+
+import android.text.format.DateUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Calendar;
+import java.util.Random;
+
+/**
+ * Date math used when binding agenda and month views, over random days within 2 years of today
+ */
+@State(Scope.Thread)
+public class CalendarUtilsBenchmark {
+    private static final int SIZE = 1024; // power of 2
+    private final long[] days = new long[SIZE];
+    private int index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0);
+        long today = CalendarUtils.today();
+        for (int i = 0; i < SIZE; i++) {
+            days[i] = today + (random.nextInt(730) - 365) * DateUtils.DAY_IN_MILLIS;
+        }
+        CalendarUtils.sWeekStart = Calendar.SUNDAY;
+    }
+
+    @Benchmark
+    public long today() {
+        return CalendarUtils.today();
+    }
+
+    @Benchmark
+    public boolean sameMonth() {
+        return CalendarUtils.sameMonth(next(), next());
+    }
+
+    @Benchmark
+    public boolean monthBefore() {
+        return CalendarUtils.monthBefore(next(), next());
+    }
+
+    @Benchmark
+    public int dayOfMonth() {
+        return CalendarUtils.dayOfMonth(next());
+    }
+
+    @Benchmark
+    public long addMonths() {
+        return CalendarUtils.addMonths(next(), 1);
+    }
+
+    @Benchmark
+    public long monthFirstDay() {
+        return CalendarUtils.monthFirstDay(next());
+    }
+
+    @Benchmark
+    public long monthLastDay() {
+        return CalendarUtils.monthLastDay(next());
+    }
+
+    @Benchmark
+    public int monthSize() {
+        return CalendarUtils.monthSize(next());
+    }
+
+    @Benchmark
+    public int monthFirstDayOffset() {
+        return CalendarUtils.monthFirstDayOffset(next());
+    }
+
+    private long next() {
+        index = (index + 1) & (SIZE - 1);
+        return days[index];
+    }
+}
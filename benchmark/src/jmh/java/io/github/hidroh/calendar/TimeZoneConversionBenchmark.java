@@ -0,0 +1,99 @@
+package io.github.hidroh.calendar;
+
+import android.text.format.DateUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * All-day event time conversions between UTC and local time zone,
+ * compared against {@link Calendar} field copying as baseline.
+ * Setup fails if results do not match baseline.
+ */
+@State(Scope.Thread)
+public class TimeZoneConversionBenchmark {
+    private static final int SIZE = 1024; // power of 2
+    @Param({"America/New_York", "Europe/London", "Asia/Singapore"})
+    public String timeZone;
+    private final long[] times = new long[SIZE];
+    private final Calendar utcCalendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+    private final Calendar localCalendar = new GregorianCalendar();
+    private TimeZone defaultTimeZone;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        defaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone(timeZone));
+        CivilDate.invalidate();
+        localCalendar.setTimeZone(TimeZone.getDefault());
+        Random random = new Random(0);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < SIZE; i++) {
+            times[i] = now + (long) ((random.nextDouble() - 0.5) * 730 * DateUtils.DAY_IN_MILLIS);
+        }
+        for (long timeMillis : times) {
+            if (CalendarUtils.toLocalTimeZone(timeMillis) != toLocalTimeZoneBaseline(timeMillis) ||
+                    CalendarUtils.toUtcTimeZone(timeMillis) != toUtcTimeZoneBaseline(timeMillis)) {
+                throw new IllegalStateException("Conversion mismatch at " + timeMillis);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        TimeZone.setDefault(defaultTimeZone);
+        CivilDate.invalidate();
+    }
+
+    @Benchmark
+    public long toLocalTimeZone() {
+        return CalendarUtils.toLocalTimeZone(next());
+    }
+
+    @Benchmark
+    public long toLocalTimeZoneBaseline() {
+        return toLocalTimeZoneBaseline(next());
+    }
+
+    @Benchmark
+    public long toUtcTimeZone() {
+        return CalendarUtils.toUtcTimeZone(next());
+    }
+
+    @Benchmark
+    public long toUtcTimeZoneBaseline() {
+        return toUtcTimeZoneBaseline(next());
+    }
+
+    private long toLocalTimeZoneBaseline(long utcTimeMillis) {
+        return convert(utcCalendar, localCalendar, utcTimeMillis);
+    }
+
+    private long toUtcTimeZoneBaseline(long localTimeMillis) {
+        return convert(localCalendar, utcCalendar, localTimeMillis);
+    }
+
+    private long convert(Calendar from, Calendar to, long timeMillis) {
+        from.setTimeInMillis(timeMillis);
+        to.clear();
+        to.set(from.get(Calendar.YEAR), from.get(Calendar.MONTH), from.get(Calendar.DAY_OF_MONTH),
+                from.get(Calendar.HOUR_OF_DAY), from.get(Calendar.MINUTE), from.get(Calendar.SECOND));
+        to.set(Calendar.MILLISECOND, from.get(Calendar.MILLISECOND));
+        return to.getTimeInMillis();
+    }
+
+    private long next() {
+        index = (index + 1) & (SIZE - 1);
+        return times[index];
+    }
+}
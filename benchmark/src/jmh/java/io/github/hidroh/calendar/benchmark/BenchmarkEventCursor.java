@@ -0,0 +1,60 @@
+package io.github.hidroh.calendar.benchmark;
+
+import android.database.MatrixCursor;
+import android.text.format.DateUtils;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import io.github.hidroh.calendar.CalendarUtils;
+import io.github.hidroh.calendar.content.EventCursor;
+
+/**
+ * {@link EventCursor} backed by an in-memory {@link MatrixCursor} of synthetic events
+ */
+public class BenchmarkEventCursor extends EventCursor {
+    private static final int ALL_DAY_RATIO = 4; // 1 in 4 events is all-day
+
+    public BenchmarkEventCursor() {
+        super(new MatrixCursor(EventCursor.PROJECTION));
+    }
+
+    /**
+     * Creates a cursor of given number of events, sorted by start time,
+     * randomly distributed over given days starting from given day
+     * @param count        number of events
+     * @param dayMillis    first day in milliseconds
+     * @param days         number of days to distribute events over
+     * @param seed         random seed
+     * @return  cursor of synthetic events
+     */
+    public static BenchmarkEventCursor create(int count, long dayMillis, int days, long seed) {
+        Random random = new Random(seed);
+        long[] offsets = new long[count];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = (long) (random.nextDouble() * days * DateUtils.DAY_IN_MILLIS);
+        }
+        Arrays.sort(offsets);
+        BenchmarkEventCursor cursor = new BenchmarkEventCursor();
+        for (int i = 0; i < count; i++) {
+            boolean allDay = random.nextInt(ALL_DAY_RATIO) == 0;
+            long start, end;
+            if (allDay) {
+                // all-day time in Calendar Provider is midnight in UTC
+                long day = dayMillis + offsets[i] / DateUtils.DAY_IN_MILLIS * DateUtils.DAY_IN_MILLIS;
+                start = CalendarUtils.toUtcTimeZone(day);
+                end = start + DateUtils.DAY_IN_MILLIS * (1 + random.nextInt(3));
+            } else {
+                start = dayMillis + offsets[i];
+                end = start + DateUtils.HOUR_IN_MILLIS * (1 + random.nextInt(3));
+            }
+            cursor.addRow(new Object[]{i, 1 + random.nextInt(5), "Event " + i,
+                    start, end, allDay ? 1 : 0});
+        }
+        return cursor;
+    }
+
+    public void addRow(Object[] columnValues) {
+        ((MatrixCursor) getWrappedCursor()).addRow(columnValues);
+    }
+}
@@ -0,0 +1,50 @@
+package io.github.hidroh.calendar.content;
+
+import android.net.Uri;
+import android.text.format.DateUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import io.github.hidroh.calendar.CalendarUtils;
+
+/**
+ * Query building for each range of days loaded in agenda, with given number of excluded calendars
+ */
+@State(Scope.Thread)
+public class EventsQueryHandlerBenchmark {
+    @Param({"0", "5"})
+    public int excludedCount;
+    private final Set<String> excludedCalendarIds = new HashSet<>();
+    private long startTimeMillis;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < excludedCount; i++) {
+            excludedCalendarIds.add(String.valueOf(i));
+        }
+        startTimeMillis = CalendarUtils.today();
+    }
+
+    @Benchmark
+    public String buildSelection() {
+        return EventsQueryHandler.buildSelection(excludedCalendarIds);
+    }
+
+    @Benchmark
+    public String[] buildSelectionArgs() {
+        return EventsQueryHandler.buildSelectionArgs(excludedCalendarIds);
+    }
+
+    @Benchmark
+    public Uri buildUri() {
+        return EventsQueryHandler.buildUri(startTimeMillis,
+                startTimeMillis + DateUtils.DAY_IN_MILLIS);
+    }
+}
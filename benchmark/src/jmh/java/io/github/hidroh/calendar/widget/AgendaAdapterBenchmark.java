@@ -0,0 +1,53 @@
+package io.github.hidroh.calendar.widget;
+
+import android.text.format.DateUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+import io.github.hidroh.calendar.CalendarUtils;
+import io.github.hidroh.calendar.benchmark.BenchmarkEventCursor;
+
+/**
+ * Adapter position lookup in {@link AgendaAdapter.EventGroupList#getGroupOrItem(int)}
+ * over given number of days, each with up to 5 events
+ */
+@State(Scope.Thread)
+public class AgendaAdapterBenchmark {
+    private static final int SIZE = 1024; // power of 2
+    @Param({"31", "93", "1000"})
+    public int groupCount;
+    private final int[] positions = new int[SIZE];
+    private AgendaAdapter.EventGroupList groups;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(0);
+        long today = CalendarUtils.today();
+        groups = new AgendaAdapter.EventGroupList(groupCount);
+        for (int i = 0; i < groupCount; i++) {
+            long timeMillis = today + i * DateUtils.DAY_IN_MILLIS;
+            AgendaAdapter.EventGroup group = new AgendaAdapter.EventGroup(timeMillis);
+            // set items directly, bypassing content observer registration
+            group.setItems(null, group.readItems(
+                    BenchmarkEventCursor.create(random.nextInt(6), timeMillis, 1, i)));
+            groups.add(group);
+        }
+        int size = groups.groupAndChildrenSize();
+        for (int i = 0; i < SIZE; i++) {
+            positions[i] = random.nextInt(size);
+        }
+    }
+
+    @Benchmark
+    public Object getGroupOrItem() {
+        index = (index + 1) & (SIZE - 1);
+        return groups.getGroupOrItem(positions[index]);
+    }
+}
@@ -0,0 +1,38 @@
+package io.github.hidroh.calendar.widget;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import io.github.hidroh.calendar.CalendarUtils;
+import io.github.hidroh.calendar.benchmark.BenchmarkEventCursor;
+import io.github.hidroh.calendar.content.EventCursor;
+
+/**
+ * Day marking in {@link MonthView.GridAdapter#swapCursor(EventCursor)}
+ * over a month of given number of events
+ */
+@State(Scope.Thread)
+public class MonthViewBenchmark {
+    @Param({"10", "100", "1000"})
+    public int eventCount;
+    private MonthView.GridAdapter adapter;
+    private EventCursor cursor;
+
+    @Setup
+    public void setUp() {
+        long monthMillis = CalendarUtils.monthFirstDay(CalendarUtils.today());
+        adapter = new MonthView.GridAdapter(monthMillis, new MonthView.DayLabels());
+        cursor = BenchmarkEventCursor.create(eventCount, monthMillis,
+                CalendarUtils.monthSize(monthMillis), 0);
+    }
+
+    @Benchmark
+    public int swapCursor() {
+        // adapter skips binding same cursor instance, wrap it again for each swap
+        adapter.swapCursor(new EventCursor(cursor));
+        return adapter.mEvents;
+    }
+}